@@ -0,0 +1,56 @@
+package com.garciat.typeclasses.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks selected by the given JMH command line, with allocation profiling ({@code
+ * -prof gc}) enabled unless the command line already asks for it.
+ *
+ * <p>Commands that run no benchmarks, such as {@code -h} or {@code -l}, are handed to JMH's own
+ * main.
+ */
+public final class BenchmarkMain {
+  private BenchmarkMain() {}
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions options;
+    try {
+      options = new CommandLineOptions(args);
+    } catch (CommandLineOptionException e) {
+      System.err.println("Error parsing command line: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+
+    if (options.shouldHelp()
+        || options.shouldList()
+        || options.shouldListWithParams()
+        || options.shouldListProfilers()
+        || options.shouldListResultFormats()) {
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+
+    run(options);
+  }
+
+  private static void run(CommandLineOptions options) throws RunnerException {
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(options);
+    if (options.getProfilers().stream().noneMatch(BenchmarkMain::isGcProfiler)) {
+      builder.addProfiler(GCProfiler.class);
+    }
+    new Runner(builder.build()).run();
+  }
+
+  private static boolean isGcProfiler(ProfilerConfig profiler) {
+    return profiler.getKlass().equals("gc")
+        || profiler.getKlass().equals(GCProfiler.class.getName());
+  }
+}
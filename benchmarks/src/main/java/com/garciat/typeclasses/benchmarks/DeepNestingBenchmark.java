@@ -0,0 +1,72 @@
+package com.garciat.typeclasses.benchmarks;
+
+import static com.garciat.typeclasses.TypeClasses.freshWitness;
+
+import com.garciat.typeclasses.TypeClasses;
+import com.garciat.typeclasses.WitnessPlan;
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.classes.Show;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of {@code Show<List<List<...Integer>>>}, nested {@code depth} times, which takes one
+ * goal per level.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepNestingBenchmark {
+  @Param({"1", "8", "32"})
+  int depth;
+
+  private Ty<Object> ty;
+  private ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target;
+  private WitnessPlan<Object> plan;
+
+  @Setup
+  public void setup() {
+    ty = Types.ty(Types.apply(Show.class, Types.nest(List.class, Integer.class, depth)));
+    target = RuntimeWitnessSystem.parse(ty.type());
+    plan = TypeClasses.plan(ty);
+  }
+
+  @Benchmark
+  public Object resolve() {
+    return RuntimeWitnessSystem.resolve(target);
+  }
+
+  /** Resolution and compilation into a plan. */
+  @Benchmark
+  public WitnessPlan<Object> plan() {
+    return TypeClasses.plan(ty);
+  }
+
+  /** Instantiation of a plan resolved beforehand. */
+  @Benchmark
+  public Object instantiate() {
+    return plan.instantiate();
+  }
+
+  @Benchmark
+  public Object fresh() {
+    return freshWitness(ty);
+  }
+}
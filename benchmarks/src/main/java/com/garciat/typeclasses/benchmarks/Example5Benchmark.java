@@ -0,0 +1,117 @@
+package com.garciat.typeclasses.benchmarks;
+
+import static com.garciat.typeclasses.TypeClasses.freshWitness;
+
+import com.garciat.typeclasses.api.Out;
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.api.TypeClass;
+import com.garciat.typeclasses.benchmarks.Example5Benchmark.Nat.S;
+import com.garciat.typeclasses.benchmarks.Example5Benchmark.Nat.Z;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.utils.Unit;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The type-level naturals of {@code Example5}: reifying {@code n}, and reifying {@code n + n},
+ * which computes the sum through an {@link Out} parameter first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Example5Benchmark {
+  @Param({"3", "16"})
+  int n;
+
+  private ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> reifyNat;
+  private ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> reifyNatAdd;
+  private Ty<ReifyNatAdd<?, ?>> reifyNatAddTy;
+
+  @Setup
+  public void setup() {
+    Type nat = Types.nest(S.class, Z.class, n);
+    reifyNat = RuntimeWitnessSystem.parse(Types.apply(ReifyNat.class, nat));
+    reifyNatAddTy = Types.ty(Types.apply(ReifyNatAdd.class, nat, nat));
+    reifyNatAdd = RuntimeWitnessSystem.parse(reifyNatAddTy.type());
+  }
+
+  @Benchmark
+  public Object resolveReifyNat() {
+    return RuntimeWitnessSystem.resolve(reifyNat);
+  }
+
+  @Benchmark
+  public Object resolveReifyNatAdd() {
+    return RuntimeWitnessSystem.resolve(reifyNatAdd);
+  }
+
+  /** Resolution, construction and use of the sum's witness. */
+  @Benchmark
+  public int reifyNatAdd() {
+    return freshWitness(reifyNatAddTy).reify();
+  }
+
+  public sealed interface Nat<N extends Nat<N>> {
+    record Z() implements Nat<Z> {}
+
+    record S<N extends Nat<N>>() implements Nat<S<N>> {}
+  }
+
+  @TypeClass
+  public interface ReifyNat<N extends Nat<N>> {
+    int reify();
+
+    @TypeClass.Witness
+    static ReifyNat<Z> reifyZ() {
+      return () -> 0;
+    }
+
+    @TypeClass.Witness
+    static <N extends Nat<N>> ReifyNat<S<N>> reifyS(ReifyNat<N> rn) {
+      return () -> 1 + rn.reify();
+    }
+  }
+
+  @TypeClass
+  public interface NatAdd<A, B, @Out C> {
+    Unit trivial();
+
+    @TypeClass.Witness
+    static <B extends Nat<B>> NatAdd<Z, B, B> addZ() {
+      return Unit::unit;
+    }
+
+    @TypeClass.Witness
+    static <A extends Nat<A>, B extends Nat<B>, C extends Nat<C>> NatAdd<S<A>, B, S<C>> addS(
+        NatAdd<A, B, C> prev) {
+      return Unit::unit;
+    }
+  }
+
+  @TypeClass
+  public interface ReifyNatAdd<A, B> {
+    int reify();
+
+    @TypeClass.Witness
+    static <A extends Nat<A>, B extends Nat<B>, C extends Nat<C>> ReifyNatAdd<A, B> reifyAddS(
+        NatAdd<A, B, C> addAB, ReifyNat<C> reifyC) {
+      return reifyC::reify;
+    }
+  }
+}
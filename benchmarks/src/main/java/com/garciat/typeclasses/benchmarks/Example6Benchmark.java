@@ -0,0 +1,153 @@
+package com.garciat.typeclasses.benchmarks;
+
+import static com.garciat.typeclasses.TypeClasses.freshWitness;
+
+import com.garciat.typeclasses.api.Out;
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.api.TypeClass;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.utils.Unit;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The type-level expressions of {@code Example6}: whether a balanced {@code Add} tree of the given
+ * depth contains a {@code Void} leaf, which combines a type-level fact per node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Example6Benchmark {
+  @Param({"2", "5"})
+  int depth;
+
+  /** Whether the rightmost leaf is {@code Void} rather than {@code Int}. */
+  @Param({"false", "true"})
+  boolean containsVoid;
+
+  private ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target;
+  private Ty<ReifiedContainsVoid<?>> ty;
+
+  @Setup
+  public void setup() {
+    ty = Types.ty(Types.apply(ReifiedContainsVoid.class, tree(depth, containsVoid)));
+    target = RuntimeWitnessSystem.parse(ty.type());
+  }
+
+  private static Type tree(int depth, boolean rightmostVoid) {
+    if (depth == 0) {
+      return rightmostVoid ? Expr.Void.class : Expr.Int.class;
+    }
+    return Types.apply(Expr.Add.class, tree(depth - 1, false), tree(depth - 1, rightmostVoid));
+  }
+
+  @Benchmark
+  public Object resolve() {
+    return RuntimeWitnessSystem.resolve(target);
+  }
+
+  /** Resolution, construction and use of the witness. */
+  @Benchmark
+  public boolean reify() {
+    return freshWitness(ty).reify();
+  }
+
+  public sealed interface Fact {
+    record True() implements Fact {}
+
+    record False() implements Fact {}
+  }
+
+  @TypeClass
+  public interface FactOr<A, B, @Out R> {
+    Unit trivial();
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+    static FactOr<Fact.False, Fact.False, Fact.False> here() {
+      return Unit::unit;
+    }
+
+    @TypeClass.Witness
+    static <A, B> FactOr<A, B, Fact.True> notHere() {
+      return Unit::unit;
+    }
+  }
+
+  @TypeClass
+  public interface ReifiedFact<B> {
+    boolean reify();
+
+    @TypeClass.Witness
+    static ReifiedFact<Fact.True> reifiedTrue() {
+      return () -> true;
+    }
+
+    @TypeClass.Witness
+    static ReifiedFact<Fact.False> reifiedFalse() {
+      return () -> false;
+    }
+  }
+
+  public sealed interface Expr<T extends Expr<T>> {
+    record Void() implements Expr<Void> {}
+
+    record Int(int value) implements Expr<Int> {}
+
+    record Add<T1 extends Expr<T1>, T2 extends Expr<T2>>(Expr<T1> left, Expr<T2> right)
+        implements Expr<Add<T1, T2>> {}
+  }
+
+  @TypeClass
+  public interface ContainsVoid<E extends Expr<E>, @Out R> {
+    Unit trivial();
+
+    @TypeClass.Witness
+    static ContainsVoid<Expr.Void, Fact.True> here() {
+      return Unit::unit;
+    }
+
+    @TypeClass.Witness
+    static ContainsVoid<Expr.Int, Fact.False> notHereInt() {
+      return Unit::unit;
+    }
+
+    @TypeClass.Witness
+    static <
+            T1 extends Expr<T1>,
+            T2 extends Expr<T2>,
+            FL extends Fact,
+            FR extends Fact,
+            F extends Fact>
+        ContainsVoid<Expr.Add<T1, T2>, F> add(
+            ContainsVoid<T1, FL> left, ContainsVoid<T2, FR> right, FactOr<FL, FR, F> factOr) {
+      return Unit::unit;
+    }
+  }
+
+  @TypeClass
+  public interface ReifiedContainsVoid<E extends Expr<E>> {
+    boolean reify();
+
+    @TypeClass.Witness
+    static <E extends Expr<E>, F> ReifiedContainsVoid<E> reifiedHere(
+        ContainsVoid<E, F> here, ReifiedFact<F> fact) {
+      return fact::reify;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.garciat.typeclasses.benchmarks;
+
+import com.garciat.typeclasses.runtime.Runtime;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Invocation of a witness constructor through {@link Runtime.Method}, versus {@link Method#invoke}.
+ *
+ * <p>Arities up to 6 call a handle adapted with {@code asType}; arity 8 calls one adapted with
+ * {@code asSpreader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvocationBenchmark {
+  @Param({"0", "2", "6", "8"})
+  int arity;
+
+  private Method reflected;
+  private Runtime.Method handle;
+  private Object[] args;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    Class<?>[] parameterTypes = new Class<?>[arity];
+    args = new Object[arity];
+    for (int i = 0; i < arity; i++) {
+      parameterTypes[i] = Object.class;
+      args[i] = "arg" + i;
+    }
+    reflected = InvocationBenchmark.class.getMethod("constructor" + arity, parameterTypes);
+    handle = new Runtime.Method(reflected);
+  }
+
+  @Benchmark
+  public Object methodHandle() throws Throwable {
+    return handle.invoke(args);
+  }
+
+  @Benchmark
+  public Object reflection() throws ReflectiveOperationException {
+    return reflected.invoke(null, args);
+  }
+
+  public static Object constructor0() {
+    return InvocationBenchmark.class;
+  }
+
+  public static Object constructor2(Object a, Object b) {
+    return a;
+  }
+
+  public static Object constructor6(Object a, Object b, Object c, Object d, Object e, Object f) {
+    return a;
+  }
+
+  public static Object constructor8(
+      Object a, Object b, Object c, Object d, Object e, Object f, Object g, Object h) {
+    return a;
+  }
+}
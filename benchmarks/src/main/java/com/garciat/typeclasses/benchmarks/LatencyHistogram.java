@@ -0,0 +1,66 @@
+package com.garciat.typeclasses.benchmarks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies from many threads, for percentiles without keeping every sample.
+ *
+ * <p>Buckets are exact below 16ns and otherwise span 1/16 of their lower bound, so a reported
+ * percentile is at most about 6% above the true one.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(Long.SIZE * SUB_BUCKETS);
+
+  void record(long nanos) {
+    counts.incrementAndGet(index(Math.max(nanos, 0)));
+  }
+
+  /** The upper bound of the bucket that holds the given quantile of the recorded latencies. */
+  long percentile(double quantile) {
+    long total = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      total += counts.get(i);
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return upperBound(i);
+      }
+    }
+    return 0;
+  }
+
+  void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  String summary() {
+    return "p50=%dns p99=%dns p99.9=%dns"
+        .formatted(percentile(0.5), percentile(0.99), percentile(0.999));
+  }
+
+  private static int index(long nanos) {
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    if (exponent < SUB_BUCKET_BITS) {
+      return (int) nanos;
+    }
+    int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  private static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,85 @@
+package com.garciat.typeclasses.benchmarks;
+
+import static com.garciat.typeclasses.TypeClasses.freshWitness;
+import static com.garciat.typeclasses.TypeClasses.witness;
+
+import com.garciat.typeclasses.api.Lazy;
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.api.TypeClass;
+import com.garciat.typeclasses.classes.Show;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Witnesses of a recursive type, whose witness refers back to itself through a {@link Lazy}
+ * dependency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyBenchmark {
+  private static final Ty<Show<Map<String, Rose<Integer>>>> TY = new Ty<>() {};
+
+  private static final ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> TARGET =
+      RuntimeWitnessSystem.parse(TY.type());
+
+  private final Map<String, Rose<Integer>> trees = Map.of("tree", Rose.full(4, 3));
+
+  @Benchmark
+  public Object resolve() {
+    return RuntimeWitnessSystem.resolve(TARGET);
+  }
+
+  /** Resolution, and construction of a witness graph with a knot. */
+  @Benchmark
+  public Show<Map<String, Rose<Integer>>> fresh() {
+    return freshWitness(TY);
+  }
+
+  /** Use of a cached witness, which forces the {@link Lazy} once per subtree. */
+  @Benchmark
+  public String show() {
+    return witness(TY).show(trees);
+  }
+
+  public record Rose<A>(A value, List<Rose<A>> children) {
+    /** A tree of the given depth, where every inner node has the given number of children. */
+    static Rose<Integer> full(int depth, int width) {
+      List<Rose<Integer>> children = new ArrayList<>(width);
+      if (depth > 1) {
+        for (int i = 0; i < width; i++) {
+          children.add(full(depth - 1, width));
+        }
+      }
+      return new Rose<>(depth, children);
+    }
+
+    @TypeClass.Witness
+    public static <A> Show<Rose<A>> roseShow(
+        Show<A> showA, Lazy<Show<List<Rose<A>>>> showChildren) {
+      return rose ->
+          "Rose("
+              + showA.show(rose.value())
+              + ", "
+              + showChildren.get().show(rose.children())
+              + ")";
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.garciat.typeclasses.benchmarks;
+
+import com.garciat.typeclasses.api.TypeClass;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of targets where several candidates match each goal, so that overlap decides between
+ * them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlapBenchmark {
+  /** Distinct element types for type-level lists. */
+  private static final List<Class<?>> ELEMENTS =
+      List.of(
+          Boolean.class,
+          Byte.class,
+          Short.class,
+          Character.class,
+          Integer.class,
+          Long.class,
+          Float.class,
+          Double.class,
+          String.class,
+          Object.class,
+          Number.class,
+          CharSequence.class,
+          Void.class,
+          Thread.class,
+          Runnable.class,
+          StringBuilder.class);
+
+  @Param({"4", "16"})
+  int size;
+
+  private ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> membership;
+  private ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> nested;
+
+  @Setup
+  public void setup() {
+    Type list = Types.apply(TList.TNil.class);
+    for (Class<?> element : ELEMENTS.subList(0, size).reversed()) {
+      list = Types.apply(TList.TCons.class, element, list);
+    }
+    membership = RuntimeWitnessSystem.parse(Types.apply(In.class, list, ELEMENTS.get(size - 1)));
+
+    nested =
+        RuntimeWitnessSystem.parse(
+            Types.apply(Describe.class, Types.nest(List.class, Integer.class, size)));
+  }
+
+  /** Membership of the last element of a type-level list, as in {@code Example2}. */
+  @Benchmark
+  public Object membership() {
+    return RuntimeWitnessSystem.resolve(membership);
+  }
+
+  /** Nested lists, where a generic, a list and a specific candidate compete at every level. */
+  @Benchmark
+  public Object nested() {
+    return RuntimeWitnessSystem.resolve(nested);
+  }
+
+  public interface TList<T extends TList<T>> {
+    record TNil() implements TList<TNil> {}
+
+    record TCons<T, TS extends TList<TS>>() implements TList<TCons<T, TS>> {}
+  }
+
+  @TypeClass
+  public interface In<TS extends TList<TS>, Y> {
+    @TypeClass.Witness
+    static <X, XS extends TList<XS>> In<TList.TCons<X, XS>, X> here() {
+      return new In<>() {};
+    }
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPABLE)
+    static <X, XS extends TList<XS>, Y> In<TList.TCons<X, XS>, Y> there(In<XS, Y> there) {
+      return new In<>() {};
+    }
+  }
+
+  @TypeClass
+  public interface Describe<A> {
+    String describe(A a);
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPABLE)
+    static <A> Describe<A> any() {
+      return String::valueOf;
+    }
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPABLE)
+    static <A> Describe<List<A>> list(Describe<A> describeA) {
+      return list -> list.stream().map(describeA::describe).toList().toString();
+    }
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+    static Describe<Integer> integer() {
+      return i -> "int " + i;
+    }
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+    static Describe<List<Integer>> integers() {
+      return list -> "ints " + list;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.garciat.typeclasses.benchmarks;
+
+import com.garciat.typeclasses.api.Ty;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/** Types built at runtime, for benchmarks whose target types are sized by a parameter. */
+final class Types {
+  private Types() {}
+
+  static Type apply(Class<?> raw, Type... args) {
+    return new Applied(raw, List.of(args));
+  }
+
+  /** The given type wrapped in the given generic class {@code depth} times. */
+  static Type nest(Class<?> raw, Type inner, int depth) {
+    Type type = inner;
+    for (int i = 0; i < depth; i++) {
+      type = apply(raw, type);
+    }
+    return type;
+  }
+
+  /**
+   * A type token for the given type. Not memoized by {@code witness}, since every token shares the
+   * same class.
+   */
+  static <T> Ty<T> ty(Type type) {
+    return new Ty<>() {
+      @Override
+      public Type type() {
+        return type;
+      }
+    };
+  }
+
+  private record Applied(Class<?> raw, List<Type> args) implements ParameterizedType {
+    @Override
+    public Type[] getActualTypeArguments() {
+      return args.toArray(Type[]::new);
+    }
+
+    @Override
+    public Type getRawType() {
+      return raw;
+    }
+
+    @Override
+    public @Nullable Type getOwnerType() {
+      return raw.getDeclaringClass();
+    }
+
+    @Override
+    public String toString() {
+      return raw.getTypeName() + Arrays.toString(getActualTypeArguments());
+    }
+  }
+}
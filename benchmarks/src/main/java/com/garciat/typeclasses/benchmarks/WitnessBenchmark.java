@@ -0,0 +1,140 @@
+package com.garciat.typeclasses.benchmarks;
+
+import static com.garciat.typeclasses.TypeClasses.freshWitness;
+import static com.garciat.typeclasses.TypeClasses.witness;
+
+import com.garciat.typeclasses.TypeClasses;
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.classes.Show;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold versus warm {@code witness()} for a handful of nested library instances.
+ *
+ * <p>Warm calls are answered by the call site memo. Cold calls find the witness cache cleared and
+ * resolve, build and cache the witness again; the witness constructors of each class are still
+ * known from earlier calls. {@link #firstCall} measures the very first call in a new JVM instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WitnessBenchmark {
+  private static final Ty<Show<Map<String, List<Optional<Integer>>>>> TY = new Ty<>() {};
+
+  private static final ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> TARGET =
+      RuntimeWitnessSystem.parse(TY.type());
+
+  private static final ClassLoader LOADER = WitnessBenchmark.class.getClassLoader();
+
+  private static final int CONTENDING_THREADS = 1_000;
+
+  @Benchmark
+  public Show<Map<String, List<Optional<Integer>>>> warm() {
+    return witness(TY);
+  }
+
+  @Benchmark
+  public Show<Map<String, List<Optional<Integer>>>> cold() {
+    TypeClasses.invalidate(LOADER);
+    return witness(TY);
+  }
+
+  /** Resolves and builds the witness without the cache. */
+  @Benchmark
+  public Show<Map<String, List<Optional<Integer>>>> fresh() {
+    return freshWitness(TY);
+  }
+
+  /** Resolution alone, without building the witness. */
+  @Benchmark
+  public Object resolve() {
+    return RuntimeWitnessSystem.resolve(TARGET);
+  }
+
+  /**
+   * Cold calls from many virtual threads at once, which wait for the one that builds the witness.
+   * The score includes starting and joining the threads; the latency of each thread's {@code
+   * witness()} call is recorded in {@link Latencies}, which prints its percentiles per iteration.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Show<Map<String, List<Optional<Integer>>>> coldContended(
+      ColdCache cold, Latencies latencies) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[CONTENDING_THREADS];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      start.await();
+                    } catch (InterruptedException e) {
+                      return;
+                    }
+                    long callStart = System.nanoTime();
+                    witness(TY);
+                    latencies.histogram.record(System.nanoTime() - callStart);
+                  });
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return witness(TY);
+  }
+
+  /** Clears the witness cache before each invocation of a benchmark that takes it. */
+  @State(Scope.Thread)
+  public static class ColdCache {
+    @Setup(Level.Invocation)
+    public void invalidate() {
+      TypeClasses.invalidate(LOADER);
+    }
+  }
+
+  /** Per-call {@code witness()} latencies of {@link #coldContended}. */
+  @State(Scope.Benchmark)
+  public static class Latencies {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @TearDown(Level.Iteration)
+    public void report() {
+      System.out.println("witness() latency: " + histogram.summary());
+      histogram.reset();
+    }
+  }
+
+  /** Includes loading, reflecting over and parsing every class involved. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  @Fork(20)
+  public Show<Map<String, List<Optional<Integer>>>> firstCall() {
+    return witness(TY);
+  }
+}
@@ -1,81 +1,485 @@
 package com.garciat.typeclasses;
 
-import com.garciat.typeclasses.api.Lazy;
 import com.garciat.typeclasses.api.Ty;
 import com.garciat.typeclasses.impl.Match;
 import com.garciat.typeclasses.impl.ParsedType;
 import com.garciat.typeclasses.impl.Resolution;
+import com.garciat.typeclasses.impl.Steps;
 import com.garciat.typeclasses.impl.utils.Either;
+import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import com.garciat.typeclasses.impl.utils.Pair;
+import com.garciat.typeclasses.runtime.EvictionPolicy;
+import com.garciat.typeclasses.runtime.GeneratedFactories;
+import com.garciat.typeclasses.runtime.ReflectionMode;
+import com.garciat.typeclasses.runtime.ResolutionListeners;
 import com.garciat.typeclasses.runtime.Runtime;
 import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
+import com.garciat.typeclasses.runtime.WitnessCache;
+import com.garciat.typeclasses.runtime.WitnessEvents;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
 
 public final class TypeClasses {
   private TypeClasses() {}
 
+  private static final WitnessCache CACHE = new WitnessCache(EvictionPolicy.maxSize(4096));
+
+  private static volatile @Nullable ForkJoinPool resolutionPool;
+
+  private static final ClassValue<CallSite> CALL_SITES =
+      new ClassValue<>() {
+        @Override
+        protected CallSite computeValue(Class<?> tyClass) {
+          return new CallSite(declaresDefaultType(tyClass));
+        }
+      };
+
+  /**
+   * Summons a witness for the given type.
+   *
+   * <p>Summoned witnesses are cached process-wide by witness type, so repeated calls for the same
+   * type return the same instance. Use {@link #freshWitness(Ty)} for witnesses that must not be
+   * shared.
+   *
+   * <p>The instance is also memoized per {@link Ty} class: since every {@code new Ty<>() {}}
+   * expression compiles to its own class, a call site pays for reflection and resolution once and
+   * afterwards only for a {@link ClassValue} lookup. Call sites do not memoize witnesses of classes
+   * from descendant class loaders, which they would otherwise keep alive.
+   *
+   * <p>Witnesses that the annotation processor resolved at compile time are built by its generated
+   * factories, skipping runtime resolution altogether.
+   */
   public static <T> T witness(Ty<T> ty) {
-    Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim> methodTree =
-        switch (RuntimeWitnessSystem.resolve(ty.type())) {
-          case Either.Right(var r) -> r;
-          case Either.Left(var error) -> throw new WitnessResolutionException(error.format());
-        };
+    CallSite site = CALL_SITES.get(ty.getClass());
 
-    Object instance = walk(new HashMap<>(), methodTree);
+    Object instance = site.memoized();
+    if (instance == null) {
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target =
+          RuntimeWitnessSystem.parse(ty.type());
+      WitnessCache.Partition partition = CACHE.partition(target);
+      int generation = partition.generation();
+
+      instance = partition.get(target, t -> summon(ty.getClass(), t));
+      site.memoize(ty.getClass(), partition, generation, instance);
+    }
 
     @SuppressWarnings("unchecked")
     T typedInstance = (T) instance;
     return typedInstance;
   }
 
-  private static Object walk(
-      Map<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, Object> cache,
-      Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim> tree) {
-    return switch (tree) {
-      case Resolution.Result.Node(var match, var dependencies) -> {
-        Object[] args = dependencies.stream().map(dep -> walk(cache, dep)).toArray();
+  /**
+   * Summons a witness for the given type, or returns empty if the type has no witness.
+   *
+   * <p>Meant for probing optional capabilities: types without a witness are remembered in a bounded
+   * cache, and per {@link Ty} class like witnesses are, so repeated probes are cheap, and no
+   * failure diagnostics are built. Exceptions thrown by witness constructors are still propagated.
+   */
+  public static <T> Optional<T> tryWitness(Ty<T> ty) {
+    CallSite site = CALL_SITES.get(ty.getClass());
+    if (site.isMemoizedUnresolvable()) {
+      return Optional.empty();
+    }
+
+    Object instance = site.memoized();
+    if (instance == null) {
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target =
+          RuntimeWitnessSystem.parse(ty.type());
+      WitnessCache.Partition partition = CACHE.partition(target);
+      int generation = partition.generation();
+
+      if (partition.isKnownUnresolvable(target)) {
+        site.memoize(ty.getClass(), partition, generation, null);
+        return Optional.empty();
+      }
+
+      instance = partition.get(target, t -> trySummon(ty.getClass(), t));
+      if (instance == null) {
+        partition.markUnresolvable(target);
+        site.memoize(ty.getClass(), partition, generation, null);
+        return Optional.empty();
+      }
+
+      site.memoize(ty.getClass(), partition, generation, instance);
+    }
+
+    @SuppressWarnings("unchecked")
+    T typedInstance = (T) instance;
+    return Optional.of(typedInstance);
+  }
+
+  /**
+   * Summons witnesses for all of the given types at once.
+   *
+   * <p>The types are resolved together, so that the goals they share are resolved once, and their
+   * witnesses are built as one instance graph, in which each witness type is constructed once.
+   * Witnesses that are already cached are reused, and the summoned ones are cached, as with {@link
+   * #witness(Ty)}. So are witnesses for which the annotation processor generated a factory at the
+   * given type's call site, which are built by that factory alone.
+   *
+   * <p>Each summoned witness is reported to the {@link ResolutionListeners} as an instantiation.
+   * Parts of the graph that several witnesses share are timed with the first of them to need them.
+   *
+   * @throws WitnessResolutionException if some type has no witness
+   */
+  public static WitnessBatch witnessAll(List<? extends Ty<?>> tys) {
+    long start = System.nanoTime();
+
+    List<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>> targets =
+        Lists.map(tys, ty -> RuntimeWitnessSystem.parse(ty.type()));
+    Object[] witnesses = new Object[targets.size()];
+
+    int cached = 0;
+    List<Integer> pending = new ArrayList<>();
+    for (int i = 0; i < targets.size(); i++) {
+      var target = targets.get(i);
+      WitnessCache.Partition partition = CACHE.partition(target);
+      witnesses[i] = partition.getIfPresent(target);
+      if (witnesses[i] != null) {
+        cached++;
+        continue;
+      }
+      switch (GeneratedFactories.find(tys.get(i).getClass(), target)) {
+        case Maybe.Just(var generated) ->
+            witnesses[i] =
+                partition.get(
+                    target, t -> ResolutionListeners.instantiate(t, guarded(t, generated)));
+        case Maybe.Nothing() -> pending.add(i);
+      }
+    }
+
+    var outcomes =
+        RuntimeWitnessSystem.resolveAll(Lists.map(pending, targets::get), resolutionPool);
+
+    List<Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> trees =
+        new ArrayList<>(outcomes.size());
+    for (var outcome : outcomes) {
+      switch (outcome) {
+        case Either.Right(var tree) -> trees.add(tree);
+        case Either.Left(var error) -> throw new WitnessResolutionException(error.format());
+      }
+    }
+
+    var program = Steps.compileAll(trees);
+    Object[] slots = new Object[program.steps().size()];
+
+    // Each root's steps follow those of the roots before it, which it may share
+    int built = 0;
+    for (int k = 0; k < pending.size(); k++) {
+      var target = targets.get(pending.get(k));
+      int root = program.roots()[k];
+      int from = built;
+      int to = Math.max(built, root + 1);
+      Object instance =
+          ResolutionListeners.instantiate(
+              target,
+              () -> {
+                WitnessPlan.build(program.steps(), slots, from, to);
+                return slots[root];
+              });
+      built = to;
+      witnesses[pending.get(k)] = CACHE.partition(target).putIfAbsent(target, instance);
+    }
+
+    int constructed = 0;
+    for (var step : program.steps()) {
+      if (step instanceof Steps.Step.Construct<?, ?, ?, ?>) {
+        constructed++;
+      }
+    }
+
+    return new WitnessBatch(
+        tys, List.of(witnesses), constructed, cached, Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  /**
+   * Summons the witnesses for the given types in the background, so that later {@link #witness(Ty)}
+   * calls for them find them cached.
+   *
+   * <p>Each type is summoned as a separate task on the given executor. The returned future
+   * completes with the time each type took to summon, in the order of the given types, or
+   * exceptionally if some type could not be summoned.
+   */
+  public static CompletableFuture<Map<Type, Duration>> warmUp(
+      Collection<? extends Ty<?>> tys, Executor executor) {
+    List<CompletableFuture<Pair<Type, Duration>>> tasks =
+        tys.stream()
+            .map(
+                ty ->
+                    CompletableFuture.supplyAsync(
+                        () -> {
+                          long start = System.nanoTime();
+                          witness(ty);
+                          return Pair.of(ty.type(), Duration.ofNanos(System.nanoTime() - start));
+                        },
+                        executor))
+            .toList();
+
+    return CompletableFuture.allOf(tasks.toArray(CompletableFuture<?>[]::new))
+        .thenApply(
+            _ -> {
+              Map<Type, Duration> timings = new LinkedHashMap<>();
+              for (var task : tasks) {
+                Pair<Type, Duration> timing = task.join();
+                timings.put(timing.fst(), timing.snd());
+              }
+              return Collections.unmodifiableMap(timings);
+            });
+  }
+
+  /** Summons a new witness for the given type, bypassing the witness cache. */
+  public static <T> T freshWitness(Ty<T> ty) {
+    Object instance = summon(ty.getClass(), RuntimeWitnessSystem.parse(ty.type()));
+
+    @SuppressWarnings("unchecked")
+    T typedInstance = (T) instance;
+    return typedInstance;
+  }
+
+  public static WitnessCache.Stats cacheStats() {
+    return CACHE.stats();
+  }
+
+  /**
+   * Drops the cached witnesses of classes defined by the given class loader or its descendants,
+   * e.g. before the loader is discarded by a redeployment.
+   */
+  public static void invalidate(ClassLoader loader) {
+    CACHE.invalidate(loader);
+  }
+
+  /**
+   * Sets the pool on which independent parts of witness resolution run in parallel, or null to
+   * resolve sequentially, which is the default. Resolves the same witnesses either way.
+   */
+  public static void setResolutionPool(@Nullable ForkJoinPool pool) {
+    resolutionPool = pool;
+  }
+
+  /** Sets how many witnesses are cached per class loader. Defaults to 4096. */
+  public static void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    CACHE.setEvictionPolicy(evictionPolicy);
+  }
+
+  /**
+   * Sets whether witness constructors of classes not compiled with the annotation processor are
+   * found by reflection, for resolutions started afterwards. See {@link ReflectionMode}.
+   */
+  public static void setReflectionMode(ReflectionMode mode) {
+    RuntimeWitnessSystem.setReflectionMode(mode);
+  }
+
+  /**
+   * Resolves the witness for the given type and compiles it into a reusable {@link WitnessPlan}.
+   *
+   * <p>Each {@link WitnessPlan#instantiate()} call builds a fresh instance graph without repeating
+   * resolution, which suits witnesses that are stateful or must not be shared.
+   */
+  public static <T> WitnessPlan<T> plan(Ty<T> ty) {
+    @SuppressWarnings("unchecked")
+    WitnessPlan<T> plan = (WitnessPlan<T>) plan(RuntimeWitnessSystem.parse(ty.type()));
+    return plan;
+  }
+
+  /**
+   * Resolves the witness for the given type and returns a factory that builds fresh instances.
+   *
+   * <p>Factories generated by the annotation processor are used when available. Otherwise, where
+   * possible, the factory is a generated hidden class that calls every witness constructor
+   * directly, so instantiation is straight-line code without reflection. It falls back to {@link
+   * WitnessPlan#instantiate()} when some witness constructor cannot be linked from generated code,
+   * e.g. because its class is not public or not visible from this library's class loader.
+   *
+   * <p>Factories are memoized per {@link Ty} class like {@link #witness(Ty)} instances are, so a
+   * call site resolves and generates its factory once. Factories for {@link Ty} classes that
+   * override {@link Ty#type()} are built anew on each call, and are best held by the caller.
+   */
+  public static <T> Supplier<T> factory(Ty<T> ty) {
+    CallSite site = CALL_SITES.get(ty.getClass());
+
+    Supplier<?> factory = site.memoizedFactory();
+    if (factory == null) {
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target =
+          RuntimeWitnessSystem.parse(ty.type());
+      WitnessCache.Partition partition = CACHE.partition(target);
+      int generation = partition.generation();
+
+      factory = newFactory(ty.getClass(), target);
+      site.memoizeFactory(ty.getClass(), partition, generation, factory);
+    }
+
+    @SuppressWarnings("unchecked")
+    Supplier<T> typed = (Supplier<T>) factory;
+    return typed;
+  }
 
-        Object instance = invoke(match, args);
+  private static Supplier<?> newFactory(
+      Class<?> callSite, ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target) {
+    if (GeneratedFactories.find(callSite, target) instanceof Maybe.Just(var generated)) {
+      return guarded(target, generated);
+    }
 
-        cache.put(match.witnessType(), instance);
+    WitnessPlan<Object> plan = plan(target);
+    return WitnessFactories.generate(plan)
+        .<Supplier<?>>fold(() -> plan::instantiate, generated -> guarded(target, generated));
+  }
 
-        yield instance;
+  private static <T> Supplier<T> guarded(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target, Supplier<T> generated) {
+    return () -> {
+      try {
+        return generated.get();
+      } catch (WitnessResolutionException e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new WitnessResolutionException(
+            "Witness factory threw an exception while building %s".formatted(target.format()), e);
       }
-      case Resolution.Result.LazyLookup(var target) ->
-          (Lazy<Object>)
-              () ->
-                  Optional.ofNullable(cache.get(target))
-                      .orElseThrow(
-                          () ->
-                              new WitnessResolutionException(
-                                  "BUG: expected cached instance for %s"
-                                      .formatted(target.format())));
-      case Resolution.Result.LazyWrap(var under) -> (Lazy<Object>) () -> walk(cache, under);
     };
   }
 
-  private static Object invoke(
+  private static WitnessPlan<Object> plan(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target) {
+    return switch (RuntimeWitnessSystem.resolve(target, resolutionPool)) {
+      case Either.Right(var tree) -> WitnessPlan.compile(tree);
+      case Either.Left(var error) -> throw new WitnessResolutionException(error.format());
+    };
+  }
+
+  private static Object summon(
+      Class<?> callSite, ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target) {
+    Supplier<?> factory =
+        switch (GeneratedFactories.find(callSite, target)) {
+          case Maybe.Just(var generated) -> guarded(target, generated);
+          // Resolves the plan now, so that only its instantiation is timed
+          case Maybe.Nothing() -> plan(target)::instantiate;
+        };
+    return ResolutionListeners.instantiate(target, factory);
+  }
+
+  private static @Nullable Object trySummon(
+      Class<?> callSite, ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target) {
+    return switch (GeneratedFactories.find(callSite, target)) {
+      case Maybe.Just(var generated) ->
+          ResolutionListeners.instantiate(target, guarded(target, generated));
+      case Maybe.Nothing() ->
+          tryPlan(target)
+              .map(plan -> ResolutionListeners.instantiate(target, plan::instantiate))
+              .orElse(null);
+    };
+  }
+
+  /** Like {@link #plan(ParsedType)}, but without formatting the resolution failure. */
+  private static Optional<WitnessPlan<Object>> tryPlan(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target) {
+    return switch (RuntimeWitnessSystem.resolve(target, resolutionPool)) {
+      case Either.Right(var tree) -> Optional.of(WitnessPlan.compile(tree));
+      case Either.Left(_) -> Optional.empty();
+    };
+  }
+
+  static Object invoke(
       Match<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim> match, Object[] args) {
+    WitnessEvents.ConstructionEvent event = WitnessEvents.constructionStarted();
     try {
-      return match.ctor().method().java().invoke(null, args);
+      return match.ctor().method().invoke(args);
     } catch (IllegalAccessException e) {
       throw new IllegalStateException("BUG: expected witness constructor method to be public", e);
-    } catch (InvocationTargetException e) {
+    } catch (Throwable e) {
       throw new WitnessResolutionException(
           "Witness constructor %s threw an exception while resolving %s"
               .formatted(match.ctor().method(), match.witnessType().format()),
-          e.getTargetException());
+          e);
+    } finally {
+      WitnessEvents.constructionFinished(event, match.ctor().method(), match.witnessType());
+    }
+  }
+
+  /**
+   * Per-{@link Ty}-class memo. Only classes that inherit {@link Ty#type()} are memoizable, since an
+   * overriding implementation may return a different type per instance.
+   *
+   * <p>A memoized instance, or the absence of one found by {@link #tryWitness}, is valid until its
+   * cache partition is cleared. So is a memoized {@link #factory(Ty)}.
+   */
+  private static final class CallSite {
+    private final boolean memoizable;
+    private volatile @Nullable Memo memo;
+    private volatile @Nullable Memo factory;
+
+    private CallSite(boolean memoizable) {
+      this.memoizable = memoizable;
+    }
+
+    private @Nullable Object memoized() {
+      Memo current = memo;
+      return current != null && current.isValid() ? current.instance() : null;
+    }
+
+    /** Whether the type was memoized as having no witness. */
+    private boolean isMemoizedUnresolvable() {
+      Memo current = memo;
+      return current != null && current.instance() == null && current.isValid();
+    }
+
+    /** Memoizes the given instance, or that there is none if null. */
+    private void memoize(
+        Class<?> tyClass,
+        WitnessCache.Partition partition,
+        int generation,
+        @Nullable Object instance) {
+      if (memoizable && partition.isReachableFrom(tyClass.getClassLoader())) {
+        memo = new Memo(instance, partition, generation);
+      }
+    }
+
+    private @Nullable Supplier<?> memoizedFactory() {
+      Memo current = factory;
+      return current != null && current.isValid() ? (Supplier<?>) current.instance() : null;
+    }
+
+    private void memoizeFactory(
+        Class<?> tyClass, WitnessCache.Partition partition, int generation, Supplier<?> instance) {
+      if (memoizable && partition.isReachableFrom(tyClass.getClassLoader())) {
+        factory = new Memo(instance, partition, generation);
+      }
+    }
+
+    private record Memo(
+        @Nullable Object instance, WitnessCache.Partition partition, int generation) {
+      private boolean isValid() {
+        return generation == partition.generation();
+      }
+    }
+  }
+
+  private static boolean declaresDefaultType(Class<?> tyClass) {
+    try {
+      return tyClass.getMethod("type").getDeclaringClass().equals(Ty.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("BUG: expected Ty class to have a type() method", e);
     }
   }
 
   public static class WitnessResolutionException extends RuntimeException {
-    private WitnessResolutionException(String message) {
+    WitnessResolutionException(String message) {
       super(message);
     }
 
-    private WitnessResolutionException(String message, Throwable cause) {
+    WitnessResolutionException(String message, Throwable cause) {
       super(message, cause);
     }
   }
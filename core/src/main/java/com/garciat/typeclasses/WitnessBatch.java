@@ -0,0 +1,70 @@
+package com.garciat.typeclasses;
+
+import com.garciat.typeclasses.api.Ty;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The witnesses summoned by {@link TypeClasses#witnessAll(List)}, together with what it cost to
+ * summon them.
+ */
+public final class WitnessBatch {
+  private final Map<Ty<?>, Object> witnessesByTy;
+  private final List<Object> witnesses;
+  private final int constructed;
+  private final int cached;
+  private final Duration elapsed;
+
+  WitnessBatch(
+      List<? extends Ty<?>> tys,
+      List<Object> witnesses,
+      int constructed,
+      int cached,
+      Duration elapsed) {
+    this.witnessesByTy = new IdentityHashMap<>();
+    for (int i = 0; i < tys.size(); i++) {
+      witnessesByTy.put(tys.get(i), witnesses.get(i));
+    }
+    this.witnesses = witnesses;
+    this.constructed = constructed;
+    this.cached = cached;
+    this.elapsed = elapsed;
+  }
+
+  /** The witness summoned for the given {@link Ty}, which must be one of the batch's. */
+  public <T> T get(Ty<T> ty) {
+    Object witness = witnessesByTy.get(ty);
+    if (witness == null) {
+      throw new IllegalArgumentException("Type token is not part of this batch: " + ty.type());
+    }
+
+    @SuppressWarnings("unchecked")
+    T typedWitness = (T) witness;
+    return typedWitness;
+  }
+
+  /** The summoned witnesses, in the order of the batch's types. */
+  public List<Object> witnesses() {
+    return witnesses;
+  }
+
+  /**
+   * The number of witness constructor invocations it took to build the batch, excluding those made
+   * by generated factories.
+   */
+  public int constructed() {
+    return constructed;
+  }
+
+  /** The number of the batch's witnesses that were already cached. */
+  public int cached() {
+    return cached;
+  }
+
+  /** The time it took to resolve and build the batch. */
+  public Duration elapsed() {
+    return elapsed;
+  }
+}
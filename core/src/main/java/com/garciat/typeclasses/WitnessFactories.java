@@ -0,0 +1,182 @@
+package com.garciat.typeclasses;
+
+import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_int;
+import static java.lang.constant.ConstantDescs.CD_void;
+import static java.lang.constant.ConstantDescs.INIT_NAME;
+import static java.lang.constant.ConstantDescs.MTD_void;
+
+import com.garciat.typeclasses.api.Lazy;
+import com.garciat.typeclasses.impl.Steps.Step;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import com.garciat.typeclasses.runtime.Runtime;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Generates hidden classes that instantiate a {@link WitnessPlan} with straight-line code.
+ *
+ * <p>The generated {@link Supplier} calls every witness constructor directly with {@code
+ * invokestatic}, in the plan's step order, storing results in a local slot array. Lazy knots are
+ * created by calling back into the plan.
+ *
+ * <p>Generation is only possible when every class named by the plan's witness constructors is
+ * visible from, and accessible to, this library's class loader. Otherwise, callers fall back to
+ * {@link WitnessPlan#instantiate()}.
+ */
+final class WitnessFactories {
+  private WitnessFactories() {}
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  /** Keeps the generated {@code get()} method well below the JVM's 64KB code size limit. */
+  private static final int MAX_STEPS = 1024;
+
+  private static final ClassDesc CD_FACTORY =
+      ClassDesc.of(WitnessFactories.class.getPackageName(), "WitnessFactory");
+  private static final ClassDesc CD_WITNESS_PLAN = classDesc(WitnessPlan.class);
+  private static final ClassDesc CD_LAZY = classDesc(Lazy.class);
+  private static final ClassDesc CD_SUPPLIER = classDesc(Supplier.class);
+
+  private static final MethodTypeDesc MTD_KNOT =
+      MethodTypeDesc.of(CD_LAZY, CD_Object.arrayType(), CD_int);
+
+  private static final String PLAN_FIELD = "plan";
+  private static final int SLOTS_LOCAL = 1;
+
+  static <T> Maybe<Supplier<T>> generate(WitnessPlan<T> plan) {
+    List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps = plan.steps();
+
+    if (steps.size() > MAX_STEPS || !steps.stream().allMatch(WitnessFactories::isLinkable)) {
+      return Maybe.nothing();
+    }
+
+    byte[] bytes =
+        ClassFile.of()
+            .build(
+                CD_FACTORY,
+                cb ->
+                    cb.withFlags(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER)
+                        .withSuperclass(CD_Object)
+                        .withInterfaceSymbols(CD_SUPPLIER)
+                        .withField(
+                            PLAN_FIELD,
+                            CD_WITNESS_PLAN,
+                            ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL)
+                        .withMethodBody(
+                            INIT_NAME,
+                            MethodTypeDesc.of(CD_void, CD_WITNESS_PLAN),
+                            ClassFile.ACC_PUBLIC,
+                            code ->
+                                code.aload(0)
+                                    .invokespecial(CD_Object, INIT_NAME, MTD_void)
+                                    .aload(0)
+                                    .aload(1)
+                                    .putfield(CD_FACTORY, PLAN_FIELD, CD_WITNESS_PLAN)
+                                    .return_())
+                        .withMethodBody(
+                            "get",
+                            MethodTypeDesc.of(CD_Object),
+                            ClassFile.ACC_PUBLIC,
+                            code -> emitGet(code, steps)));
+
+    MethodHandles.Lookup hidden;
+    try {
+      hidden = LOOKUP.defineHiddenClass(bytes, true);
+    } catch (IllegalAccessException | LinkageError e) {
+      // Linkage or access problems that slipped past isLinkable(); the plan still works
+      return Maybe.nothing();
+    }
+
+    try {
+      Object factory =
+          hidden
+              .findConstructor(
+                  hidden.lookupClass(), MethodType.methodType(void.class, WitnessPlan.class))
+              .invoke(plan);
+
+      @SuppressWarnings("unchecked")
+      Supplier<T> supplier = (Supplier<T>) factory;
+      return Maybe.just(supplier);
+    } catch (Throwable e) {
+      throw new IllegalStateException("BUG: could not instantiate generated witness factory", e);
+    }
+  }
+
+  private static void emitGet(
+      CodeBuilder code,
+      List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps) {
+    code.loadConstant(steps.size()).anewarray(CD_Object).astore(SLOTS_LOCAL);
+
+    for (int i = 0; i < steps.size(); i++) {
+      code.aload(SLOTS_LOCAL).loadConstant(i);
+
+      switch (steps.get(i)) {
+        case Step.Construct(var match, var argSlots) -> {
+          Runtime.Method method = match.ctor().method();
+
+          for (int j = 0; j < argSlots.length; j++) {
+            code.aload(SLOTS_LOCAL)
+                .loadConstant(argSlots[j])
+                .aaload()
+                .checkcast(classDesc(method.type().parameterType(j)));
+          }
+
+          code.invokestatic(
+              classDesc(method.owner()),
+              method.name(),
+              method.type().describeConstable().orElseThrow(),
+              method.owner().isInterface());
+        }
+        case Step.Knot(_, _) ->
+            code.aload(0)
+                .getfield(CD_FACTORY, PLAN_FIELD, CD_WITNESS_PLAN)
+                .aload(SLOTS_LOCAL)
+                .loadConstant(i)
+                .invokevirtual(CD_WITNESS_PLAN, "knot", MTD_KNOT);
+      }
+
+      code.aastore();
+    }
+
+    code.aload(SLOTS_LOCAL).loadConstant(steps.size() - 1).aaload().areturn();
+  }
+
+  private static boolean isLinkable(
+      Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim> step) {
+    return switch (step) {
+      case Step.Construct(var match, _) -> {
+        MethodType type = match.ctor().method().type();
+        yield isLinkable(match.ctor().method().owner())
+            && isLinkable(type.returnType())
+            && type.parameterList().stream().allMatch(p -> !p.isPrimitive() && isLinkable(p));
+      }
+      case Step.Knot(_, _) -> true;
+    };
+  }
+
+  /** Whether generated code in this package can refer to the given class by name. */
+  private static boolean isLinkable(Class<?> cls) {
+    if (cls.isPrimitive()) {
+      return true;
+    } else if (cls.isArray()) {
+      return isLinkable(cls.componentType());
+    }
+    try {
+      return Class.forName(cls.getName(), false, WitnessFactories.class.getClassLoader()) == cls
+          && LOOKUP.accessClass(cls) == cls;
+    } catch (ClassNotFoundException | IllegalAccessException e) {
+      return false;
+    }
+  }
+
+  private static ClassDesc classDesc(Class<?> cls) {
+    return cls.describeConstable().orElseThrow();
+  }
+}
@@ -0,0 +1,107 @@
+package com.garciat.typeclasses;
+
+import com.garciat.typeclasses.api.Lazy;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.Resolution;
+import com.garciat.typeclasses.impl.Steps;
+import com.garciat.typeclasses.impl.Steps.Step;
+import com.garciat.typeclasses.runtime.Runtime;
+import java.util.List;
+
+/**
+ * A resolved witness tree compiled into a flat, immutable instantiation plan.
+ *
+ * <p>The plan is a post-order list of steps, where each step writes one slot: either the result of
+ * invoking a witness constructor on earlier slots, or a {@link Lazy} that reads another slot. Lazy
+ * knots are wired at compile time, so {@link #instantiate()} builds a fresh instance graph without
+ * walking types, hashing, or recursing.
+ *
+ * <p>All witness constructors are invoked eagerly, including those under a {@link Lazy} dependency;
+ * the {@link Lazy} then refers to the instance built by the plan.
+ */
+public final class WitnessPlan<T> {
+  private final List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps;
+
+  private WitnessPlan(List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps) {
+    this.steps = steps;
+  }
+
+  /** Builds a new instance graph and returns its root witness. */
+  public T instantiate() {
+    Object[] slots = build(steps);
+
+    @SuppressWarnings("unchecked")
+    T root = (T) slots[slots.length - 1];
+    return root;
+  }
+
+  /** Runs the given steps, returning the slots they wrote. */
+  static Object[] build(
+      List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps) {
+    Object[] slots = new Object[steps.size()];
+    build(steps, slots, 0, slots.length);
+    return slots;
+  }
+
+  /**
+   * Runs the given steps from {@code from} up to, excluding, {@code to}, writing their slots. Steps
+   * only read slots that earlier steps wrote.
+   */
+  static void build(
+      List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps,
+      Object[] slots,
+      int from,
+      int to) {
+    for (int i = from; i < to; i++) {
+      slots[i] =
+          switch (steps.get(i)) {
+            case Step.Construct(var match, var argSlots) -> {
+              Object[] args = new Object[argSlots.length];
+              for (int j = 0; j < argSlots.length; j++) {
+                args[j] = slots[argSlots[j]];
+              }
+              yield TypeClasses.invoke(match, args);
+            }
+            case Step.Knot(var target, var slot) -> new SlotLazy(slots, slot, target);
+          };
+    }
+  }
+
+  /** The number of slots, i.e. constructor invocations and lazy knots, per instantiation. */
+  public int size() {
+    return steps.size();
+  }
+
+  /** The steps of this plan, in instantiation order. The last step builds the root witness. */
+  List<Step<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> steps() {
+    return steps;
+  }
+
+  /** Creates the {@link Lazy} for the knot at the given step, reading from the given slots. */
+  Lazy<Object> knot(Object[] slots, int step) {
+    if (steps.get(step) instanceof Step.Knot(var target, var slot)) {
+      return new SlotLazy(slots, slot, target);
+    } else {
+      throw new IllegalArgumentException("BUG: expected a knot at step " + step);
+    }
+  }
+
+  static WitnessPlan<Object> compile(
+      Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim> tree) {
+    return new WitnessPlan<>(Steps.compile(tree));
+  }
+
+  private record SlotLazy(
+      Object[] slots, int slot, ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target)
+      implements Lazy<Object> {
+    @Override
+    public Object get() {
+      Object instance = slots[slot];
+      if (instance == null) {
+        throw new TypeClasses.WitnessResolutionException(
+            "Lazy witness for %s was forced before it was constructed".formatted(target.format()));
+      }
+      return instance;
+    }
+  }
+}
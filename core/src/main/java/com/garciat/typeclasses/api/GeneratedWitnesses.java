@@ -0,0 +1,18 @@
+package com.garciat.typeclasses.api;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Witness factories generated at compile time by the annotation processor, one implementation per
+ * top-level class that summons witnesses.
+ *
+ * <p>Implementations are named after their top-level class with a {@code _Witnesses} suffix, and
+ * are not meant to be written by hand.
+ */
+public interface GeneratedWitnesses {
+  String CLASS_NAME_SUFFIX = "_Witnesses";
+
+  /** Factories of fresh witness instances, keyed by the canonical key of their witness type. */
+  Map<String, Supplier<?>> factories();
+}
@@ -0,0 +1,92 @@
+package com.garciat.typeclasses.impl;
+
+import com.garciat.typeclasses.impl.ParsedType.Var;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A mutable store of variable bindings with a trail, so that bindings can be undone cheaply.
+ *
+ * <p>Bindings are made within frames. A variable can be bound once per frame; binding it again to a
+ * different type fails. Bindings from enclosing frames are shadowed instead, and restored when the
+ * inner frame is rolled back.
+ *
+ * <p>A frame is either a scope, which only sees its own bindings, or a nested frame, which also
+ * sees the bindings of the frames it is nested in, up to their scope.
+ */
+public final class Bindings<V, C, P> {
+  private final Map<Var<V, C, P>, Binding<V, C, P>> bindings = new HashMap<>();
+  private final List<Undo<V, C, P>> trail = new ArrayList<>();
+  private int frameStart = 0;
+  private int scopeStart = 0;
+
+  /** Starts a new scope, in which no earlier bindings are visible. */
+  public Frame enter() {
+    Frame frame = nest();
+    scopeStart = trail.size();
+    return frame;
+  }
+
+  /** Starts a new frame within the current scope. */
+  public Frame nest() {
+    Frame frame = new Frame(trail.size(), frameStart, scopeStart);
+    frameStart = trail.size();
+    return frame;
+  }
+
+  /** Ends the given frame, keeping its bindings as part of the enclosing frame. */
+  public void keep(Frame frame) {
+    frameStart = frame.outerFrameStart();
+    scopeStart = frame.outerScopeStart();
+  }
+
+  /** Ends the given frame, undoing every binding made since it was entered. */
+  public void rollback(Frame frame) {
+    while (trail.size() > frame.mark()) {
+      Undo<V, C, P> undo = trail.removeLast();
+      if (undo.previous() == null) {
+        bindings.remove(undo.var());
+      } else {
+        bindings.put(undo.var(), undo.previous());
+      }
+    }
+    frameStart = frame.outerFrameStart();
+    scopeStart = frame.outerScopeStart();
+  }
+
+  /** Binds the given variable in the current frame, unless it is bound there to another type. */
+  public boolean bind(Var<V, C, P> var, ParsedType<V, C, P> type) {
+    Binding<V, C, P> existing = bindings.get(var);
+    if (existing != null && existing.position() >= frameStart) {
+      return existing.type().equals(type);
+    }
+    trail.add(new Undo<>(var, existing));
+    bindings.put(var, new Binding<>(type, trail.size() - 1));
+    return true;
+  }
+
+  public @Nullable ParsedType<V, C, P> lookup(Var<V, C, P> var) {
+    Binding<V, C, P> binding = bindings.get(var);
+    return binding == null || binding.position() < scopeStart ? null : binding.type();
+  }
+
+  /** The bindings made in the current frame. */
+  public Map<Var<V, C, P>, ParsedType<V, C, P>> frameBindings() {
+    Map<Var<V, C, P>, ParsedType<V, C, P>> result = new HashMap<>();
+    for (int i = frameStart; i < trail.size(); i++) {
+      Var<V, C, P> var = trail.get(i).var();
+      result.put(var, bindings.get(var).type());
+    }
+    return result;
+  }
+
+  /** A frame's position on the trail, and the state to restore when it ends. */
+  public record Frame(int mark, int outerFrameStart, int outerScopeStart) {}
+
+  private record Binding<V, C, P>(ParsedType<V, C, P> type, int position) {}
+
+  private record Undo<V, C, P>(Var<V, C, P> var, @Nullable Binding<V, C, P> previous) {}
+}
@@ -0,0 +1,149 @@
+package com.garciat.typeclasses.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Hash-conses {@link ParsedType} nodes, so that structurally equal types share one canonical
+ * instance and can be compared by reference.
+ *
+ * <p>Nodes are looked up by their shape: the node kind, the identities of their (canonical)
+ * children, and the value of their leaf representation. Shapes cache their hash code, so interning
+ * a node costs one hash lookup per node that was not interned before, and a single identity lookup
+ * for nodes that were. Each canonical node also carries a summary of its free variables.
+ *
+ * <p>An interner is not thread-safe, and is meant to be scoped to a single resolution.
+ */
+public final class Interner<V, C, P> {
+  private final Map<ParsedType<V, C, P>, Entry<V, C, P>> entriesByNode = new IdentityHashMap<>();
+
+  private final Map<Shape, Entry<V, C, P>> entriesByShape = new HashMap<>();
+
+  /** Returns the canonical instance that is structurally equal to the given type. */
+  public ParsedType<V, C, P> intern(ParsedType<V, C, P> type) {
+    return entry(type).type();
+  }
+
+  /**
+   * The free variables of the given type, as in {@link Types#findVars}. Computed once per canonical
+   * node from its children's, and empty without allocation for ground types.
+   */
+  public Set<ParsedType.Var<V, C, P>> freeVars(ParsedType<V, C, P> type) {
+    return entry(type).freeVars();
+  }
+
+  private Entry<V, C, P> entry(ParsedType<V, C, P> type) {
+    Entry<V, C, P> known = entriesByNode.get(type);
+    if (known != null) {
+      return known;
+    }
+
+    Entry<V, C, P> rebuilt =
+        switch (type) {
+          case ParsedType.App(var fun, var arg) -> {
+            var f = entry(fun);
+            var a = entry(arg);
+            yield new Entry<>(
+                f.type() == fun && a.type() == arg
+                    ? type
+                    : new ParsedType.App<>(f.type(), a.type()),
+                union(f.freeVars(), a.freeVars()));
+          }
+          case ParsedType.Out(var under) -> {
+            var u = entry(under);
+            yield new Entry<>(u.type() == under ? type : new ParsedType.Out<>(u.type()), Set.of());
+          }
+          case ParsedType.ArrayOf(var elem) -> {
+            var e = entry(elem);
+            yield new Entry<>(
+                e.type() == elem ? type : new ParsedType.ArrayOf<>(e.type()), e.freeVars());
+          }
+          case ParsedType.Lazy(var under) -> {
+            var u = entry(under);
+            yield new Entry<>(
+                u.type() == under ? type : new ParsedType.Lazy<>(u.type()), u.freeVars());
+          }
+          case ParsedType.Var<V, C, P> v -> new Entry<>(v, Set.of(v));
+          case ParsedType.Const(_, _), ParsedType.Primitive(_), ParsedType.Wildcard() ->
+              new Entry<>(type, Set.of());
+        };
+
+    Entry<V, C, P> canonical = entriesByShape.putIfAbsent(shape(rebuilt.type()), rebuilt);
+    if (canonical == null) {
+      canonical = rebuilt;
+    }
+
+    entriesByNode.put(type, canonical);
+    entriesByNode.put(canonical.type(), canonical);
+    return canonical;
+  }
+
+  private static <T> Set<T> union(Set<T> a, Set<T> b) {
+    if (a.isEmpty()) {
+      return b;
+    } else if (b.isEmpty()) {
+      return a;
+    }
+    Set<T> result = new HashSet<>(a);
+    result.addAll(b);
+    return Collections.unmodifiableSet(result);
+  }
+
+  private record Entry<V, C, P>(ParsedType<V, C, P> type, Set<ParsedType.Var<V, C, P>> freeVars) {}
+
+  private static Shape shape(ParsedType<?, ?, ?> type) {
+    return switch (type) {
+      case ParsedType.App(var fun, var arg) -> new Shape(ParsedType.App.class, null, fun, arg);
+      case ParsedType.Out(var under) -> new Shape(ParsedType.Out.class, null, under, null);
+      case ParsedType.ArrayOf(var elem) -> new Shape(ParsedType.ArrayOf.class, null, elem, null);
+      case ParsedType.Lazy(var under) -> new Shape(ParsedType.Lazy.class, null, under, null);
+      case ParsedType.Var(var ref) -> new Shape(ParsedType.Var.class, ref, null, null);
+      case ParsedType.Const<?, ?, ?> c -> new Shape(ParsedType.Const.class, c, null, null);
+      case ParsedType.Primitive(var repr) ->
+          new Shape(ParsedType.Primitive.class, repr, null, null);
+      case ParsedType.Wildcard() -> new Shape(ParsedType.Wildcard.class, null, null, null);
+    };
+  }
+
+  /** A node's kind, leaf value, and canonical children. Children are compared by identity. */
+  private static final class Shape {
+    private final Class<?> kind;
+    private final @Nullable Object leaf;
+    private final @Nullable ParsedType<?, ?, ?> first;
+    private final @Nullable ParsedType<?, ?, ?> second;
+    private final int hash;
+
+    private Shape(
+        Class<?> kind,
+        @Nullable Object leaf,
+        @Nullable ParsedType<?, ?, ?> first,
+        @Nullable ParsedType<?, ?, ?> second) {
+      this.kind = kind;
+      this.leaf = leaf;
+      this.first = first;
+      this.second = second;
+      this.hash =
+          Objects.hash(kind, leaf, System.identityHashCode(first), System.identityHashCode(second));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Shape other
+          && kind == other.kind
+          && first == other.first
+          && second == other.second
+          && Objects.equals(leaf, other.leaf);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
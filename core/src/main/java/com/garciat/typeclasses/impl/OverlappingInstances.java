@@ -3,33 +3,148 @@ package com.garciat.typeclasses.impl;
 import static com.garciat.typeclasses.api.TypeClass.Witness.Overlap.OVERLAPPABLE;
 import static com.garciat.typeclasses.api.TypeClass.Witness.Overlap.OVERLAPPING;
 
+import com.garciat.typeclasses.impl.utils.Either;
+import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Pair;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
 
 public final class OverlappingInstances {
   private OverlappingInstances() {}
 
   /**
+   * Attempts the given constructors and keeps the successful matches that no other successful match
+   * overlaps, but only attempts a constructor if no constructor that would overlap it succeeds.
+   *
+   * <p>A more general candidate is therefore not attempted, e.g. its dependencies are not resolved,
+   * when a more specific candidate matches. If the more specific candidate fails, the more general
+   * one is attempted as a fallback. The result is the same as attempting every constructor and
+   * reducing the successes.
+   *
+   * @return the failures of the attempted constructors, and the reduced candidates
    * @implSpec <a href=
    *     "https://ghc.gitlab.haskell.org/ghc/doc/users_guide/exts/instances.html#overlapping-instances">6.8.8.5.
    *     Overlapping instances</a>
    */
-  public static <M, V, C, P> List<Match<M, V, C, P>> reduce(List<Match<M, V, C, P>> candidates) {
-    return candidates.stream()
-        .filter(
-            iX ->
-                candidates.stream().filter(iY -> iX != iY).noneMatch(iY -> isOverlappedBy(iX, iY)))
-        .toList();
+  public static <F, M, V, C, P> Pair<List<F>, List<Match<M, V, C, P>>> reduceLazily(
+      Specificity<M, V, C, P> specificity,
+      List<WitnessConstructor<M, V, C, P>> ctors,
+      Function<WitnessConstructor<M, V, C, P>, Either<F, Match<M, V, C, P>>> attempt) {
+    List<Specificity.Node<M, V, C, P>> nodes = Lists.map(ctors, specificity::node);
+
+    List<Either<F, Match<M, V, C, P>>> attempts = new ArrayList<>(ctors.size());
+    for (int i = 0; i < ctors.size(); i++) {
+      attempts.add(null);
+    }
+
+    IntPredicate succeeds =
+        i -> {
+          if (attempts.get(i) == null) {
+            attempts.set(i, attempt.apply(ctors.get(i)));
+          }
+          return attempts.get(i) instanceof Either.Right<F, Match<M, V, C, P>>;
+        };
+
+    List<Match<M, V, C, P>> candidates = new ArrayList<>();
+    for (int x = 0; x < nodes.size(); x++) {
+      boolean overlapped = false;
+      for (int y = 0; y < nodes.size() && !overlapped; y++) {
+        overlapped = x != y && nodes.get(x).isOverlappedBy(nodes.get(y)) && succeeds.test(y);
+      }
+      if (!overlapped && succeeds.test(x) && attempts.get(x) instanceof Either.Right(var match)) {
+        candidates.add(match);
+      }
+    }
+
+    List<F> failures = new ArrayList<>();
+    for (Either<F, Match<M, V, C, P>> a : attempts) {
+      if (a instanceof Either.Left(var failure)) {
+        failures.add(failure);
+      }
+    }
+
+    return Pair.of(failures, candidates);
   }
 
-  private static <M, V, C, P> boolean isOverlappedBy(Match<M, V, C, P> iX, Match<M, V, C, P> iY) {
-    return (iX.ctor().overlap() == OVERLAPPABLE || iY.ctor().overlap() == OVERLAPPING)
-        && isSubstitutionInstance(iX, iY)
-        && !isSubstitutionInstance(iY, iX);
+  /**
+   * The constructors that {@link #reduceLazily} attempts regardless of the outcome of other
+   * attempts, i.e. those that no other given constructor overlaps. Attempting these ahead of time
+   * does not change its result.
+   */
+  public static <M, V, C, P> List<WitnessConstructor<M, V, C, P>> alwaysAttempted(
+      Specificity<M, V, C, P> specificity, List<WitnessConstructor<M, V, C, P>> ctors) {
+    List<Specificity.Node<M, V, C, P>> nodes = Lists.map(ctors, specificity::node);
+    List<WitnessConstructor<M, V, C, P>> result = new ArrayList<>(ctors.size());
+    for (int x = 0; x < nodes.size(); x++) {
+      boolean overlapped = false;
+      for (int y = 0; y < nodes.size() && !overlapped; y++) {
+        overlapped = x != y && nodes.get(x).isOverlappedBy(nodes.get(y));
+      }
+      if (!overlapped) {
+        result.add(ctors.get(x));
+      }
+    }
+    return result;
   }
 
-  private static <M, V, C, P> boolean isSubstitutionInstance(
-      Match<M, V, C, P> base, Match<M, V, C, P> reference) {
-    return Unification.unify(base.ctor().returnType(), reference.ctor().returnType())
-        .fold(() -> false, map -> !map.isEmpty());
+  /**
+   * Caches which witness constructors overlap which, by constructor pair.
+   *
+   * <p>Whether one constructor's return type is a substitution instance of another's never changes,
+   * so each pair is unified at most once per direction. Answers are kept per constructor, in a map
+   * keyed by the identity of the other constructor's node.
+   *
+   * <p>Reads are lock-free, so that concurrent resolutions and forked tasks can share the cache.
+   * Two threads may unify the same pair at once, and then store the same answer.
+   */
+  public static final class Specificity<M, V, C, P> {
+    private final ConcurrentMap<WitnessConstructor<M, V, C, P>, Node<M, V, C, P>> nodes =
+        new ConcurrentHashMap<>();
+
+    private Node<M, V, C, P> node(WitnessConstructor<M, V, C, P> ctor) {
+      Node<M, V, C, P> node = nodes.get(ctor);
+      return node != null ? node : nodes.computeIfAbsent(ctor, Node::new);
+    }
+
+    /**
+     * Whether the first constructor is overlapped by the second, i.e. is not a candidate for goals
+     * that both match.
+     */
+    public boolean isOverlappedBy(
+        WitnessConstructor<M, V, C, P> overlapped, WitnessConstructor<M, V, C, P> overlapping) {
+      return node(overlapped).isOverlappedBy(node(overlapping));
+    }
+
+    private static final class Node<M, V, C, P> {
+      private final WitnessConstructor<M, V, C, P> ctor;
+
+      /** Whether this constructor is a substitution instance of the key's, once known. */
+      private final ConcurrentMap<Node<M, V, C, P>, Boolean> instanceOf = new ConcurrentHashMap<>();
+
+      private Node(WitnessConstructor<M, V, C, P> ctor) {
+        this.ctor = ctor;
+      }
+
+      private boolean isOverlappedBy(Node<M, V, C, P> other) {
+        return (ctor.overlap() == OVERLAPPABLE || other.ctor.overlap() == OVERLAPPING)
+            && isSubstitutionInstanceOf(other)
+            && !other.isSubstitutionInstanceOf(this);
+      }
+
+      private boolean isSubstitutionInstanceOf(Node<M, V, C, P> reference) {
+        Boolean known = instanceOf.get(reference);
+        if (known == null) {
+          known =
+              Unification.unify(ctor.returnType(), reference.ctor.returnType())
+                  .fold(() -> false, map -> !map.isEmpty());
+          instanceOf.put(reference, known);
+        }
+        return known;
+      }
+    }
   }
 }
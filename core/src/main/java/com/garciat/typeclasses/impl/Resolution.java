@@ -4,7 +4,6 @@ import static com.garciat.typeclasses.impl.utils.AutoCloseables.around;
 import static com.garciat.typeclasses.impl.utils.Unit.unit;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toUnmodifiableList;
-import static java.util.stream.Collectors.toUnmodifiableSet;
 
 import com.garciat.typeclasses.impl.ParsedType.Var;
 import com.garciat.typeclasses.impl.utils.Either;
@@ -13,14 +12,21 @@ import com.garciat.typeclasses.impl.utils.Maybe;
 import com.garciat.typeclasses.impl.utils.Pair;
 import com.garciat.typeclasses.impl.utils.Unit;
 import com.garciat.typeclasses.impl.utils.ZeroOneMore;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import org.jspecify.annotations.Nullable;
 
 public final class Resolution {
   private Resolution() {}
@@ -34,121 +40,509 @@ public final class Resolution {
     record LazyWrap<M, V, C, P>(Result<M, V, C, P> under) implements Result<M, V, C, P> {}
   }
 
+  /**
+   * Resolves the witness for the given type.
+   *
+   * <p>The search does not keep the failures of the candidates it rejects. A failed resolution is
+   * reported as a {@link Failure.Deferred}, which repeats the search with diagnostics on when it is
+   * formatted.
+   */
   public static <M, V, C, P> Either<Failure<M, V, C, P>, Result<M, V, C, P>> resolve(
       Function<C, List<WitnessConstructor<M, V, C, P>>> constructors, ParsedType<V, C, P> target) {
-    return resolveRec(new HashSet<>(), constructors, target);
+    return resolve(constructors, target, null);
   }
 
-  private static <M, V, C, P> Either<Failure<M, V, C, P>, Result<M, V, C, P>> resolveRec(
-      Set<ParsedType<V, C, P>> seen,
+  /**
+   * Resolves the witness for the given type, running independent parts of the search as tasks on
+   * the given pool, if any.
+   *
+   * <p>The candidates for a goal that no other candidate overlaps are matched in parallel, and so
+   * are the dependencies of a candidate that have no free variables once its head is matched. Both
+   * would be attempted by the sequential search as well, so the outcome is the same. Completed
+   * goals are tabled across tasks.
+   */
+  public static <M, V, C, P> Either<Failure<M, V, C, P>, Result<M, V, C, P>> resolve(
       Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
-      ParsedType<V, C, P> target) {
+      ParsedType<V, C, P> target,
+      @Nullable ForkJoinPool pool) {
+    return resolveAll(constructors, List.of(target), pool).getFirst();
+  }
+
+  /**
+   * Resolves the witnesses for the given types within a single resolution, so that goals shared by
+   * several targets are resolved once. Outcomes are returned in the order of the targets.
+   */
+  public static <M, V, C, P> List<Either<Failure<M, V, C, P>, Result<M, V, C, P>>> resolveAll(
+      Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
+      List<ParsedType<V, C, P>> targets,
+      @Nullable ForkJoinPool pool) {
+    return resolveAll(constructors, (_, _) -> Maybe.nothing(), targets, pool, null);
+  }
+
+  /**
+   * Like {@link #resolveAll(Function, List, ForkJoinPool)}, reporting goals to the listener.
+   *
+   * @param sharedSpecificity the overlap relation kept across resolutions for the given type class
+   *     and candidates, if any. Candidates are otherwise compared within the resolution.
+   */
+  public static <M, V, C, P> List<Either<Failure<M, V, C, P>, Result<M, V, C, P>>> resolveAll(
+      Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
+      BiFunction<
+              C,
+              List<WitnessConstructor<M, V, C, P>>,
+              Maybe<OverlappingInstances.Specificity<M, V, C, P>>>
+          sharedSpecificity,
+      List<ParsedType<V, C, P>> targets,
+      @Nullable ForkJoinPool pool,
+      @Nullable Listener<V, C, P> listener) {
+    Context<M, V, C, P> context =
+        new Context<>(constructors, sharedSpecificity, false, pool, listener);
+    Function<ParsedType<V, C, P>, Either<Failure<M, V, C, P>, Result<M, V, C, P>>> resolveOne =
+        target ->
+            resolveRec(context, target)
+                .mapLeft(
+                    _ ->
+                        new Failure.Deferred<>(
+                            target, () -> diagnose(constructors, sharedSpecificity, target, pool)));
+    return pool == null
+        ? Lists.map(targets, resolveOne)
+        : pool.invoke(ForkJoinTask.adapt(() -> Lists.map(targets, resolveOne)));
+  }
+
+  /**
+   * Resolves the witness for the given type, keeping every rejected candidate's failure. Runs on
+   * the pool of the failed resolution, if any, so that the failure reported is the one found by the
+   * same search.
+   */
+  private static <M, V, C, P> Failure<M, V, C, P> diagnose(
+      Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
+      BiFunction<
+              C,
+              List<WitnessConstructor<M, V, C, P>>,
+              Maybe<OverlappingInstances.Specificity<M, V, C, P>>>
+          sharedSpecificity,
+      ParsedType<V, C, P> target,
+      @Nullable ForkJoinPool pool) {
+    Context<M, V, C, P> context = new Context<>(constructors, sharedSpecificity, true, pool, null);
+    Supplier<Either<Failure<M, V, C, P>, Result<M, V, C, P>>> search =
+        () -> resolveRec(context, target);
+    return (pool == null ? search.get() : pool.invoke(ForkJoinTask.adapt(search::get)))
+        .fold(
+            failure -> failure,
+            _ -> {
+              throw new IllegalStateException(
+                  "BUG: resolution succeeded on retry for " + target.format());
+            });
+  }
+
+  /**
+   * Observes the goals searched by a resolution, e.g. for profiling. Goals answered from the table
+   * or by cycle detection are not searched, and not reported. Called concurrently when resolving on
+   * a pool.
+   */
+  public interface Listener<V, C, P> {
+    /**
+     * Called when the search for a goal starts, at the given nesting depth. The returned callback
+     * is called when it finishes.
+     */
+    GoalListener goalStarted(ParsedType<V, C, P> goal, int depth);
+  }
+
+  public interface GoalListener {
+    /**
+     * Counts include the goal's subgoals.
+     *
+     * @param candidatesAttempted the witness constructors matched against the goals
+     * @param unifications the unifications of constructor heads and resolved dependencies
+     */
+    void goalFinished(int candidatesAttempted, int unifications, boolean resolved);
+  }
+
+  /**
+   * State of a single resolution. Goal types are interned on entry, so that they can be tracked by
+   * identity.
+   */
+  private static final class Context<M, V, C, P> {
+    private final Function<C, List<WitnessConstructor<M, V, C, P>>> constructors;
+
+    /** The overlap relation kept across resolutions for a type class and its candidates. */
+    private final BiFunction<
+            C,
+            List<WitnessConstructor<M, V, C, P>>,
+            Maybe<OverlappingInstances.Specificity<M, V, C, P>>>
+        sharedSpecificity;
+
+    /** Whether failures keep the failures of their rejected candidates. */
+    private final boolean diagnostics;
+
+    /** The pool that runs independent parts of the search, if any. */
+    private final @Nullable ForkJoinPool pool;
+
+    private final @Nullable Listener<V, C, P> listener;
+
+    /** The overlap relation of candidates not covered by {@link #sharedSpecificity}. */
+    private final OverlappingInstances.Specificity<M, V, C, P> specificity;
+
+    private final Interner<V, C, P> interner = new Interner<>();
+
+    /** Variable bindings of the candidate matches on the current resolution path. */
+    private final Bindings<V, C, P> bindings = new Bindings<>();
+
+    /** Lazy goals on the current resolution path, with their depth on the path. */
+    private final Map<ParsedType<V, C, P>, Integer> seen = new IdentityHashMap<>();
+
+    /**
+     * Completed goals whose outcome does not depend on the path they were resolved on. Keyed by
+     * identity, or by structure when shared with forked contexts, which intern goals separately.
+     */
+    private final Map<ParsedType<V, C, P>, Either<Failure<M, V, C, P>, Result<M, V, C, P>>> table;
+
+    /** The shallowest path depth that was looked up in {@link #seen} by the current goal. */
+    private int shallowestSeen = Integer.MAX_VALUE;
+
+    /** Nesting depth of the current goal. Only tracked for the listener. */
+    private int goalDepth;
+
+    /** Witness constructors matched so far by this context. */
+    private int attempted;
+
+    /** Unifications done so far by this context's matches. */
+    private int unifications;
+
+    private Context(
+        Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
+        BiFunction<
+                C,
+                List<WitnessConstructor<M, V, C, P>>,
+                Maybe<OverlappingInstances.Specificity<M, V, C, P>>>
+            sharedSpecificity,
+        boolean diagnostics,
+        @Nullable ForkJoinPool pool,
+        @Nullable Listener<V, C, P> listener) {
+      this(
+          constructors,
+          sharedSpecificity,
+          diagnostics,
+          pool,
+          listener,
+          new OverlappingInstances.Specificity<>(),
+          pool == null ? new IdentityHashMap<>() : new ConcurrentHashMap<>());
+    }
+
+    private Context(
+        Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
+        BiFunction<
+                C,
+                List<WitnessConstructor<M, V, C, P>>,
+                Maybe<OverlappingInstances.Specificity<M, V, C, P>>>
+            sharedSpecificity,
+        boolean diagnostics,
+        @Nullable ForkJoinPool pool,
+        @Nullable Listener<V, C, P> listener,
+        OverlappingInstances.Specificity<M, V, C, P> specificity,
+        Map<ParsedType<V, C, P>, Either<Failure<M, V, C, P>, Result<M, V, C, P>>> table) {
+      this.constructors = constructors;
+      this.sharedSpecificity = sharedSpecificity;
+      this.diagnostics = diagnostics;
+      this.pool = pool;
+      this.listener = listener;
+      this.specificity = specificity;
+      this.table = table;
+    }
+
+    /** A context that continues the search from the current path, e.g. on another thread. */
+    private Context<M, V, C, P> fork() {
+      Context<M, V, C, P> child =
+          new Context<>(
+              constructors, sharedSpecificity, diagnostics, pool, listener, specificity, table);
+      seen.forEach((goal, depth) -> child.seen.put(child.interner.intern(goal), depth));
+      child.goalDepth = goalDepth;
+      return child;
+    }
+  }
+
+  /**
+   * Runs the given task for each item, each in its own forked context, as tasks on the context's
+   * pool. Returns the results in order, to be taken with {@link Supplier#get()}.
+   *
+   * <p>The tasks run ahead of the order in which a sequential resolution would run them, and may
+   * run where it would have stopped early. So a task's exception, e.g. from a failing constructor
+   * lookup, is only thrown when its result is taken, i.e. when a sequential resolution would have
+   * reached it.
+   */
+  private static <M, V, C, P, T, R> List<Supplier<R>> forkAll(
+      Context<M, V, C, P> context, List<T> items, BiFunction<Context<M, V, C, P>, T, R> task) {
+    List<ForkJoinTask<Pair<Context<M, V, C, P>, Supplier<R>>>> tasks =
+        Lists.map(
+            items,
+            item ->
+                ForkJoinTask.adapt(
+                    () -> {
+                      Context<M, V, C, P> child = context.fork();
+                      try {
+                        R result = task.apply(child, item);
+                        return Pair.<Context<M, V, C, P>, Supplier<R>>of(child, () -> result);
+                      } catch (RuntimeException | LinkageError e) {
+                        return Pair.<Context<M, V, C, P>, Supplier<R>>of(
+                            child,
+                            () -> {
+                              throw e;
+                            });
+                      }
+                    }));
+
+    ForkJoinTask.invokeAll(tasks);
+
+    List<Supplier<R>> results = new ArrayList<>(tasks.size());
+    for (ForkJoinTask<Pair<Context<M, V, C, P>, Supplier<R>>> forked : tasks) {
+      Pair<Context<M, V, C, P>, Supplier<R>> done = forked.join();
+      context.shallowestSeen = Math.min(context.shallowestSeen, done.fst().shallowestSeen);
+      context.attempted += done.fst().attempted;
+      context.unifications += done.fst().unifications;
+      results.add(done.snd());
+    }
+    return results;
+  }
+
+  /**
+   * Resolves a goal, reusing the outcome of an identical goal completed earlier in the same
+   * resolution.
+   *
+   * <p>Outcomes that refer to a lazy goal further up the path, i.e. that contain a lazy lookup or a
+   * cycle failure for it, are only valid on that path and are not tabled.
+   */
+  private static <M, V, C, P> Either<Failure<M, V, C, P>, Result<M, V, C, P>> resolveRec(
+      Context<M, V, C, P> context, ParsedType<V, C, P> goal) {
+    ParsedType<V, C, P> target = context.interner.intern(goal);
+
     // Lazy and cycle detection
-    {
-      if (seen.contains(target)) {
-        if (target instanceof ParsedType.Lazy(var under)) {
-          return Either.right(new Result.LazyLookup<>(under));
-        } else {
-          return Either.left(new Failure.ResolutionCycle<>(target));
-        }
+    if (context.seen.get(target) instanceof Integer depth) {
+      context.shallowestSeen = Math.min(context.shallowestSeen, depth);
+      if (target instanceof ParsedType.Lazy(var under)) {
+        return Either.right(new Result.LazyLookup<>(under));
+      } else {
+        return Either.left(new Failure.ResolutionCycle<>(target));
       }
+    }
 
-      if (target instanceof ParsedType.Lazy(var under)) {
-        try (var _ = around(() -> seen.add(target), () -> seen.remove(target))) {
-          return resolveRec(seen, constructors, under).map(Result.LazyWrap::new);
-        }
+    if (context.table.get(target) instanceof Either<Failure<M, V, C, P>, Result<M, V, C, P>> done) {
+      return done;
+    }
+
+    int depth = context.seen.size();
+    int outerShallowestSeen = context.shallowestSeen;
+    context.shallowestSeen = Integer.MAX_VALUE;
+    try {
+      var result =
+          context.listener == null
+              ? resolveGoal(context, target, depth)
+              : observeGoal(context, context.listener, target, depth);
+      if (context.shallowestSeen >= depth) {
+        context.table.put(target, result);
+      }
+      return result;
+    } finally {
+      context.shallowestSeen = Math.min(outerShallowestSeen, context.shallowestSeen);
+    }
+  }
+
+  private static <M, V, C, P> Either<Failure<M, V, C, P>, Result<M, V, C, P>> observeGoal(
+      Context<M, V, C, P> context,
+      Listener<V, C, P> listener,
+      ParsedType<V, C, P> target,
+      int depth) {
+    GoalListener goal = listener.goalStarted(target, context.goalDepth);
+    int attemptedBefore = context.attempted;
+    int unificationsBefore = context.unifications;
+    context.goalDepth++;
+    try {
+      var result = resolveGoal(context, target, depth);
+      goal.goalFinished(
+          context.attempted - attemptedBefore,
+          context.unifications - unificationsBefore,
+          result instanceof Either.Right<?, ?>);
+      return result;
+    } finally {
+      context.goalDepth--;
+    }
+  }
+
+  private static <M, V, C, P> Either<Failure<M, V, C, P>, Result<M, V, C, P>> resolveGoal(
+      Context<M, V, C, P> context, ParsedType<V, C, P> target, int depth) {
+    if (target instanceof ParsedType.Lazy(var under)) {
+      try (var _ =
+          around(() -> context.seen.put(target, depth), () -> context.seen.remove(target))) {
+        return resolveRec(context, under).map(Result.LazyWrap::new);
       }
     }
 
     // Free variable check
     {
-      Set<Var<V, C, P>> freeVars = Types.findVars(target).collect(toUnmodifiableSet());
+      Set<Var<V, C, P>> freeVars = context.interner.freeVars(target);
       if (!freeVars.isEmpty()) {
         return Either.left(new Failure.FreeVariables<>(target, freeVars));
       }
     }
 
+    List<WitnessConstructor<M, V, C, P>> ctors =
+        Witnesses.findWitnesses(context.constructors, target);
+    OverlappingInstances.Specificity<M, V, C, P> specificity =
+        Witnesses.typeClass(target)
+            .flatMap(typeClass -> context.sharedSpecificity.apply(typeClass, ctors))
+            .fold(() -> context.specificity, shared -> shared);
+
+    Map<
+            WitnessConstructor<M, V, C, P>,
+            Supplier<Either<MatchFailure<M, V, C, P>, Match<M, V, C, P>>>>
+        matchedAhead = new IdentityHashMap<>();
+    if (context.pool != null) {
+      var ahead = OverlappingInstances.alwaysAttempted(specificity, ctors);
+      if (ahead.size() > 1) {
+        Lists.zip(
+                ahead,
+                forkAll(context, ahead, (child, ctor) -> match(child, ctor, target)),
+                Pair::of)
+            .forEach(p -> matchedAhead.put(p.fst(), p.snd()));
+      }
+    }
+
     var attempts =
-        Either.partition(
-            Lists.map(
-                Witnesses.findWitnesses(constructors, target),
-                ctor -> match(seen, constructors, ctor, target)));
+        OverlappingInstances.reduceLazily(
+            specificity,
+            ctors,
+            ctor -> {
+              var matched = matchedAhead.get(ctor);
+              return matched != null ? matched.get() : match(context, ctor, target);
+            });
 
-    var candidates = OverlappingInstances.reduce(attempts.snd());
+    var candidates = attempts.snd();
 
     return switch (ZeroOneMore.of(candidates)) {
       case ZeroOneMore.Zero() ->
-          Either.left(new Failure.NoMatch<>(target, attempts.fst(), attempts.snd()));
+          Either.left(
+              context.diagnostics
+                  ? new Failure.NoMatch<>(target, attempts.fst(), attempts.snd())
+                  : new Failure.NoMatch<>(target, List.of(), List.of()));
       case ZeroOneMore.More(var matches) -> Either.left(new Failure.Ambiguous<>(target, matches));
       case ZeroOneMore.One(var match) ->
-          Either.traverse(match.dependencies(), t -> resolveRec(seen, constructors, t))
+          Either.traverse(match.dependencies(), t -> resolveRec(context, t))
               .<Result<M, V, C, P>>map(children -> new Result.Node<>(match, children))
               .mapLeft(f -> new Failure.Nested<>(target, f));
     };
   }
 
   private static <M, V, C, P> Either<MatchFailure<M, V, C, P>, Match<M, V, C, P>> match(
-      Set<ParsedType<V, C, P>> seen,
-      Function<C, List<WitnessConstructor<M, V, C, P>>> constructors,
+      Context<M, V, C, P> context,
       WitnessConstructor<M, V, C, P> ctor,
       ParsedType<V, C, P> target) {
-    return switch (Unification.unify(ctor.returnType(), target)) {
-      case Maybe.Nothing() -> Either.left(new MatchFailure.HeadMismatch<>(ctor));
-      case Maybe.Just(var headSubst) -> {
-        List<ParsedType<V, C, P>> dependencies =
-            Unification.substituteAll(headSubst, ctor.paramTypes());
-
-        List<ParsedType<V, C, P>> dependenciesByTopo;
-
-        switch (sortByTopo(dependencies)) {
-          case Either.Right(var sorted) -> dependenciesByTopo = sorted;
-          case Either.Left(TopoFailure.Conflict(var typeA, var typeB)) -> {
-            yield Either.left(new MatchFailure.ConflictingConstraints<>(ctor, typeA, typeB));
-          }
-          case Either.Left(TopoFailure.Cycle()) -> {
-            yield Either.left(new MatchFailure.Cycle<>(ctor, dependencies));
-          }
-        }
+    context.attempted++;
+    Bindings<V, C, P> bindings = context.bindings;
+    Bindings.Frame frame = bindings.enter();
+    try {
+      return matchIn(context, bindings, ctor, target);
+    } finally {
+      bindings.rollback(frame);
+    }
+  }
+
+  private static <M, V, C, P> Either<MatchFailure<M, V, C, P>, Match<M, V, C, P>> matchIn(
+      Context<M, V, C, P> context,
+      Bindings<V, C, P> bindings,
+      WitnessConstructor<M, V, C, P> ctor,
+      ParsedType<V, C, P> target) {
+    context.unifications++;
+    if (!Unification.unify(ctor.returnType(), target, bindings)) {
+      return Either.left(new MatchFailure.HeadMismatch<>(ctor));
+    }
+
+    List<ParsedType<V, C, P>> dependencies = Unification.substituteAll(bindings, ctor.paramTypes());
+
+    List<ParsedType<V, C, P>> dependenciesByTopo;
+
+    switch (sortByTopo(dependencies)) {
+      case Either.Right(var sorted) -> dependenciesByTopo = sorted;
+      case Either.Left(TopoFailure.Conflict(var typeA, var typeB)) -> {
+        return Either.left(new MatchFailure.ConflictingConstraints<>(ctor, typeA, typeB));
+      }
+      case Either.Left(TopoFailure.Cycle()) -> {
+        return Either.left(new MatchFailure.Cycle<>(ctor, dependencies));
+      }
+    }
 
-        Map<Var<V, C, P>, ParsedType<V, C, P>> substitution = new HashMap<>(headSubst);
-
-        for (ParsedType<V, C, P> dependency : dependenciesByTopo) {
-          switch (flatten(
-              resolveRec(seen, constructors, Unification.substitute(substitution, dependency)))) {
-            case Either.Right(Result.Node(var resolved, _)) -> {
-              switch (Unification.unify(
-                  Types.unwrapOut1(dependency), Types.unwrapOut1(resolved.witnessType()))) {
-                case Maybe.Just(var childSubst) -> substitution.putAll(childSubst);
-                case Maybe.Nothing() -> {
-                  // Child witness does not match expected type
-                  yield Either.left(
-                      new MatchFailure.ResolvedConstraintMismatch<>(
-                          ctor,
-                          Types.unwrapOut1(dependency),
-                          Types.unwrapOut1(resolved.witnessType())));
-                }
-              }
-            }
-            case Either.Right(Result.LazyWrap(_)) ->
-                throw new IllegalStateException(
-                    "flatten should have eliminated LazyWrap cases here");
-            case Either.Right(Result.LazyLookup(_)) -> {
-              // For now, we just treat them as resolved constraints :shrug:
-            }
-            case Either.Left(var error) -> {
-              // Could not resolve child witness
-              yield Either.left(new MatchFailure.UnresolvedConstraint<>(ctor, dependency, error));
-            }
+    Map<ParsedType<V, C, P>, Supplier<Either<Failure<M, V, C, P>, Result<M, V, C, P>>>>
+        resolvedAhead =
+            context.pool != null
+                ? resolveAhead(context, bindings, dependenciesByTopo)
+                : new IdentityHashMap<>();
+
+    for (ParsedType<V, C, P> dependency : dependenciesByTopo) {
+      var ahead = resolvedAhead.get(dependency);
+      var outcome =
+          ahead != null
+              ? ahead.get()
+              : resolveRec(context, Unification.substitute(bindings, dependency));
+      switch (flatten(outcome)) {
+        case Either.Right(Result.Node(var resolved, _)) -> {
+          // Child bindings go in their own frame, so they override the head's bindings
+          Bindings.Frame child = bindings.nest();
+          context.unifications++;
+          if (Unification.unify(
+              Types.unwrapOut1(dependency), Types.unwrapOut1(resolved.witnessType()), bindings)) {
+            bindings.keep(child);
+          } else {
+            // Child witness does not match expected type
+            return Either.left(
+                new MatchFailure.ResolvedConstraintMismatch<>(
+                    ctor, Types.unwrapOut1(dependency), Types.unwrapOut1(resolved.witnessType())));
           }
         }
+        case Either.Right(Result.LazyWrap(_)) ->
+            throw new IllegalStateException("flatten should have eliminated LazyWrap cases here");
+        case Either.Right(Result.LazyLookup(_)) -> {
+          // For now, we just treat them as resolved constraints :shrug:
+        }
+        case Either.Left(var error) -> {
+          // Could not resolve child witness
+          return Either.left(new MatchFailure.UnresolvedConstraint<>(ctor, dependency, error));
+        }
+      }
+    }
+
+    return Either.right(
+        new Match<>(
+            ctor,
+            Unification.substituteAll(bindings, ctor.paramTypes()),
+            Unification.substitute(bindings, ctor.returnType())));
+  }
 
-        yield Either.right(
-            new Match<>(
-                ctor,
-                Unification.substituteAll(substitution, ctor.paramTypes()),
-                Unification.substitute(substitution, ctor.returnType())));
+  /**
+   * Resolves in parallel the dependencies that do not wait on the outputs of the others, i.e. that
+   * have no free variables under the head's bindings. Out-variables are disjoint across
+   * dependencies, so resolving the others first would not change these goals.
+   */
+  private static <M, V, C, P>
+      Map<ParsedType<V, C, P>, Supplier<Either<Failure<M, V, C, P>, Result<M, V, C, P>>>>
+          resolveAhead(
+              Context<M, V, C, P> context,
+              Bindings<V, C, P> bindings,
+              List<ParsedType<V, C, P>> dependencies) {
+    List<Pair<ParsedType<V, C, P>, ParsedType<V, C, P>>> ground = new ArrayList<>();
+    for (ParsedType<V, C, P> dependency : dependencies) {
+      ParsedType<V, C, P> goal =
+          context.interner.intern(Unification.substitute(bindings, dependency));
+      if (context.interner.freeVars(goal).isEmpty()) {
+        ground.add(Pair.of(dependency, goal));
       }
-    };
+    }
+
+    Map<ParsedType<V, C, P>, Supplier<Either<Failure<M, V, C, P>, Result<M, V, C, P>>>> resolved =
+        new IdentityHashMap<>();
+    if (ground.size() > 1) {
+      Lists.zip(
+              ground, forkAll(context, ground, (child, p) -> resolveRec(child, p.snd())), Pair::of)
+          .forEach(p -> resolved.put(p.fst().fst(), p.snd()));
+    }
+    return resolved;
   }
 
   private static <V, C, P> Either<TopoFailure<V, C, P>, List<ParsedType<V, C, P>>> sortByTopo(
@@ -183,10 +577,7 @@ public final class Resolution {
   }
 
   private static <V, C, P> Node<V, C, P> parseNode(ParsedType<V, C, P> type) {
-    return new Node<>(
-        type,
-        Types.findOutVars(type).collect(toUnmodifiableSet()),
-        Types.findVars(type).collect(toUnmodifiableSet()));
+    return new Node<>(type, Types.findOutVars(type), Types.findVars(type));
   }
 
   private static <V, C, P>
@@ -313,6 +704,10 @@ public final class Resolution {
     record Nested<M, V, C, P>(ParsedType<V, C, P> target, Failure<M, V, C, P> cause)
         implements Failure<M, V, C, P> {}
 
+    /** A failure whose details are only computed when needed. */
+    record Deferred<M, V, C, P>(ParsedType<V, C, P> target, Supplier<Failure<M, V, C, P>> details)
+        implements Failure<M, V, C, P> {}
+
     default String format() {
       return switch (this) {
         case ResolutionCycle(var target) ->
@@ -352,6 +747,7 @@ public final class Resolution {
                 + target.format()
                 + "\nCaused by: "
                 + cause.format().indent(2);
+        case Deferred(_, var details) -> details.get().format();
       };
     }
   }
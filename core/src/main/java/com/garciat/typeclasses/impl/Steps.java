@@ -0,0 +1,111 @@
+package com.garciat.typeclasses.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flattens a resolved witness tree into a post-order list of instantiation steps.
+ *
+ * <p>Each step writes one slot: either the result of invoking a witness constructor on earlier
+ * slots, or a lazy reference to another slot. Lazy lookups refer to the last slot built for their
+ * target type, which may come after the lookup itself.
+ */
+public final class Steps {
+  private Steps() {}
+
+  public sealed interface Step<M, V, C, P> {
+    record Construct<M, V, C, P>(Match<M, V, C, P> match, int[] argSlots)
+        implements Step<M, V, C, P> {}
+
+    record Knot<M, V, C, P>(ParsedType<V, C, P> target, int slot) implements Step<M, V, C, P> {}
+  }
+
+  public static <M, V, C, P> List<Step<M, V, C, P>> compile(Resolution.Result<M, V, C, P> tree) {
+    Compiler<M, V, C, P> compiler = new Compiler<>(false);
+    compiler.compile(tree);
+    return compiler.link();
+  }
+
+  /** Steps that build several root witnesses, together with the slots of the roots. */
+  public record Program<M, V, C, P>(List<Step<M, V, C, P>> steps, int[] roots) {}
+
+  /**
+   * Compiles several resolved trees into one list of steps, in which each witness type is
+   * constructed once and shared by every tree that depends on it.
+   */
+  public static <M, V, C, P> Program<M, V, C, P> compileAll(
+      List<Resolution.Result<M, V, C, P>> trees) {
+    Compiler<M, V, C, P> compiler = new Compiler<>(true);
+    int[] roots = trees.stream().mapToInt(compiler::compile).toArray();
+    return new Program<>(compiler.link(), roots);
+  }
+
+  /** The witness type built by the given step. */
+  private static <M, V, C, P> ParsedType<V, C, P> witnessType(Step<M, V, C, P> step) {
+    return switch (step) {
+      case Step.Construct(var match, _) -> match.witnessType();
+      case Step.Knot(var target, _) -> new ParsedType.Lazy<>(target);
+    };
+  }
+
+  private static final class Compiler<M, V, C, P> {
+    /** Whether nodes reuse the slot of an earlier node of the same witness type. */
+    private final boolean shared;
+
+    private final List<Step<M, V, C, P>> steps = new ArrayList<>();
+
+    /** Mirrors the instance cache of a tree walk: the last slot built for each witness type. */
+    private final Map<ParsedType<V, C, P>, Integer> slotsByType = new HashMap<>();
+
+    private final List<Integer> lookups = new ArrayList<>();
+
+    private Compiler(boolean shared) {
+      this.shared = shared;
+    }
+
+    private int compile(Resolution.Result<M, V, C, P> tree) {
+      return switch (tree) {
+        case Resolution.Result.Node(var match, _)
+            when shared && slotsByType.get(match.witnessType()) instanceof Integer slot ->
+            slot;
+        case Resolution.Result.Node(var match, var children) -> {
+          int[] argSlots = children.stream().mapToInt(this::compile).toArray();
+          int slot = emit(new Step.Construct<>(match, argSlots));
+          slotsByType.put(match.witnessType(), slot);
+          yield slot;
+        }
+        case Resolution.Result.LazyWrap(var under) -> {
+          int slot = compile(under);
+          yield emit(new Step.Knot<>(witnessType(steps.get(slot)), slot));
+        }
+        case Resolution.Result.LazyLookup(var target) -> {
+          // Resolved in link(), once every node has been assigned a slot
+          int slot = emit(new Step.Knot<>(target, -1));
+          lookups.add(slot);
+          yield slot;
+        }
+      };
+    }
+
+    private List<Step<M, V, C, P>> link() {
+      for (int slot : lookups) {
+        if (steps.get(slot) instanceof Step.Knot(var target, _)) {
+          Integer targetSlot = slotsByType.get(target);
+          if (targetSlot == null) {
+            throw new IllegalStateException(
+                "BUG: expected cached instance for %s".formatted(target.format()));
+          }
+          steps.set(slot, new Step.Knot<>(target, targetSlot));
+        }
+      }
+      return List.copyOf(steps);
+    }
+
+    private int emit(Step<M, V, C, P> step) {
+      steps.add(step);
+      return steps.size() - 1;
+    }
+  }
+}
@@ -1,33 +1,55 @@
 package com.garciat.typeclasses.impl;
 
-import java.util.stream.Stream;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
 
 public final class Types {
   private Types() {}
 
-  public static <V, C, P> Stream<ParsedType.Var<V, C, P>> findOutVars(ParsedType<V, C, P> type) {
+  /** The variables directly under an Out in the given type. Does not allocate if there are none. */
+  public static <V, C, P> Set<ParsedType.Var<V, C, P>> findOutVars(ParsedType<V, C, P> type) {
+    return addOutVars(type, Set.of());
+  }
+
+  /** The variables in the given type, except under an Out. Does not allocate if there are none. */
+  public static <V, C, P> Set<ParsedType.Var<V, C, P>> findVars(ParsedType<V, C, P> type) {
+    return addVars(type, Set.of());
+  }
+
+  private static <V, C, P> Set<ParsedType.Var<V, C, P>> addOutVars(
+      ParsedType<V, C, P> type, Set<ParsedType.Var<V, C, P>> acc) {
     return switch (type) {
-      case ParsedType.Var(_) -> Stream.of();
-      case ParsedType.Out(ParsedType.Var<V, C, P> v) -> Stream.of(v);
-      case ParsedType.Out(_) -> Stream.of();
-      case ParsedType.App(var fun, var arg) -> Stream.concat(findOutVars(fun), findOutVars(arg));
-      case ParsedType.ArrayOf(var elem) -> findOutVars(elem);
-      case ParsedType.Lazy(var under) -> findOutVars(under);
-      case ParsedType.Const(_, _), ParsedType.Primitive(_), ParsedType.Wildcard() -> Stream.of();
+      case ParsedType.Var(_) -> acc;
+      case ParsedType.Out(ParsedType.Var<V, C, P> v) -> add(acc, v);
+      case ParsedType.Out(_) -> acc;
+      case ParsedType.App(var fun, var arg) -> addOutVars(arg, addOutVars(fun, acc));
+      case ParsedType.ArrayOf(var elem) -> addOutVars(elem, acc);
+      case ParsedType.Lazy(var under) -> addOutVars(under, acc);
+      case ParsedType.Const(_, _), ParsedType.Primitive(_), ParsedType.Wildcard() -> acc;
     };
   }
 
-  public static <V, C, P> Stream<ParsedType.Var<V, C, P>> findVars(ParsedType<V, C, P> type) {
+  private static <V, C, P> Set<ParsedType.Var<V, C, P>> addVars(
+      ParsedType<V, C, P> type, Set<ParsedType.Var<V, C, P>> acc) {
     return switch (type) {
-      case ParsedType.Var<V, C, P> v -> Stream.of(v);
-      case ParsedType.Out(_) -> Stream.of();
-      case ParsedType.App(var fun, var arg) -> Stream.concat(findVars(fun), findVars(arg));
-      case ParsedType.ArrayOf(var elem) -> findVars(elem);
-      case ParsedType.Lazy(var under) -> findVars(under);
-      case ParsedType.Const(_, _), ParsedType.Primitive(_), ParsedType.Wildcard() -> Stream.of();
+      case ParsedType.Var<V, C, P> v -> add(acc, v);
+      case ParsedType.Out(_) -> acc;
+      case ParsedType.App(var fun, var arg) -> addVars(arg, addVars(fun, acc));
+      case ParsedType.ArrayOf(var elem) -> addVars(elem, acc);
+      case ParsedType.Lazy(var under) -> addVars(under, acc);
+      case ParsedType.Const(_, _), ParsedType.Primitive(_), ParsedType.Wildcard() -> acc;
     };
   }
 
+  /** Adds to the accumulator, replacing the initial immutable empty set on first use. */
+  private static <T> Set<T> add(Set<T> acc, T element) {
+    Set<T> result = acc.isEmpty() ? new HashSet<>() : acc;
+    result.add(element);
+    return result;
+  }
+
   /** Unwraps one level of Out from the given type. */
   public static <C, P, V> ParsedType<V, C, P> unwrapOut1(ParsedType<V, C, P> type) {
     return switch (type) {
@@ -42,4 +64,26 @@ public final class Types {
       case ParsedType.Wildcard<V, C, P> w -> w;
     };
   }
+
+  /**
+   * A canonical string for a type without variables, given names for its constants and primitives.
+   *
+   * <p>Static and runtime types produce the same key when their constants are named by binary name.
+   */
+  public static <V, C, P> Maybe<String> key(
+      ParsedType<V, C, P> type, Function<C, String> constName, Function<P, String> primName) {
+    return switch (type) {
+      case ParsedType.Var(_) -> Maybe.nothing();
+      case ParsedType.Out(var under) -> key(under, constName, primName).map(k -> "Out<" + k + ">");
+      case ParsedType.App(var fun, var arg) ->
+          Maybe.<String, String, String>lift((f, a) -> f + "(" + a + ")")
+              .apply(key(fun, constName, primName), key(arg, constName, primName));
+      case ParsedType.ArrayOf(var elem) -> key(elem, constName, primName).map(k -> k + "[]");
+      case ParsedType.Lazy(var under) ->
+          key(under, constName, primName).map(k -> "Lazy<" + k + ">");
+      case ParsedType.Const(var repr, _) -> Maybe.just(constName.apply(repr));
+      case ParsedType.Primitive(var repr) -> Maybe.just(primName.apply(repr));
+      case ParsedType.Wildcard() -> Maybe.just("?");
+    };
+  }
 }
@@ -8,7 +8,6 @@ import com.garciat.typeclasses.impl.ParsedType.Out;
 import com.garciat.typeclasses.impl.ParsedType.Primitive;
 import com.garciat.typeclasses.impl.ParsedType.Var;
 import com.garciat.typeclasses.impl.ParsedType.Wildcard;
-import com.garciat.typeclasses.impl.utils.Maps;
 import com.garciat.typeclasses.impl.utils.Maybe;
 import com.garciat.typeclasses.impl.utils.Pair;
 import java.util.List;
@@ -23,35 +22,57 @@ public final class Unification {
    */
   public static <V, C, P> Maybe<Map<Var<V, C, P>, ParsedType<V, C, P>>> unify(
       ParsedType<V, C, P> t1, ParsedType<V, C, P> t2) {
+    Bindings<V, C, P> bindings = new Bindings<>();
+    return unify(t1, t2, bindings) ? Maybe.just(bindings.frameBindings()) : Maybe.nothing();
+  }
+
+  /**
+   * Like {@link #unify(ParsedType, ParsedType)}, but binds variables in the current frame of the
+   * given bindings. On failure, some bindings may have been made; roll back the frame to undo them.
+   */
+  public static <V, C, P> boolean unify(
+      ParsedType<V, C, P> t1, ParsedType<V, C, P> t2, Bindings<V, C, P> bindings) {
     return switch (Pair.of(t1, t2)) {
-      case Pair(Lazy(var x), var t) -> unify(x, t);
-      case Pair(var t, Lazy(var x)) -> unify(t, x);
-      case Pair(Var(_), Primitive(_)) -> Maybe.nothing(); // no primitives in generics
-      case Pair(Var<V, C, P> v, var t) -> Maybe.just(Map.of(v, t));
-      case Pair(Const(var repr1, _), Const(var repr2, _)) when repr1.equals(repr2) ->
-          Maybe.just(Map.of());
+      case Pair(Lazy(var x), var t) -> unify(x, t, bindings);
+      case Pair(var t, Lazy(var x)) -> unify(t, x, bindings);
+      case Pair(Var(_), Primitive(_)) -> false; // no primitives in generics
+      case Pair(Var<V, C, P> v, var t) -> bindings.bind(v, t);
+      case Pair(Const(var repr1, _), Const(var repr2, _)) -> repr1.equals(repr2);
       case Pair(App(var fun1, var arg1), App(var fun2, var arg2)) ->
-          Maybe.apply(Maps::merge, unify(fun1, fun2), unify(arg1, arg2));
-      case Pair(ArrayOf(var elem1), ArrayOf(var elem2)) -> unify(elem1, elem2);
-      case Pair(Primitive(var prim1), Primitive(var prim2)) when prim1.equals(prim2) ->
-          Maybe.just(Map.of());
+          unify(fun1, fun2, bindings) && unify(arg1, arg2, bindings);
+      case Pair(ArrayOf(var elem1), ArrayOf(var elem2)) -> unify(elem1, elem2, bindings);
+      case Pair(Primitive(var prim1), Primitive(var prim2)) -> prim1.equals(prim2);
       // Wildcards can match anything
-      case Pair(Wildcard(), _) -> Maybe.just(Map.of());
+      case Pair(Wildcard(), _) -> true;
       // Out types match each other, regardless of their inner types
       // The resolution algorithm will check compatibility later
-      case Pair(Out(_), Out(_)) -> Maybe.just(Map.of());
-      case Pair(_, _) -> Maybe.nothing();
+      case Pair(Out(_), Out(_)) -> true;
+      case Pair(_, _) -> false;
     };
   }
 
+  /** Applies the given bindings, sharing every subtree that contains no bound variables. */
   public static <V, C, P> ParsedType<V, C, P> substitute(
-      Map<Var<V, C, P>, ParsedType<V, C, P>> map, ParsedType<V, C, P> type) {
+      Bindings<V, C, P> bindings, ParsedType<V, C, P> type) {
     return switch (type) {
-      case Var<V, C, P> var -> map.getOrDefault(var, var);
-      case Out(var under) -> new Out<>(substitute(map, under));
-      case App(var fun, var arg) -> new App<>(substitute(map, fun), substitute(map, arg));
-      case ArrayOf(var elem) -> new ArrayOf<>(substitute(map, elem));
-      case Lazy(var t) -> new Lazy<>(substitute(map, t));
+      case Var<V, C, P> var -> bindings.lookup(var) instanceof ParsedType<V, C, P> t ? t : var;
+      case Out(var under) -> {
+        var u = substitute(bindings, under);
+        yield u == under ? type : new Out<>(u);
+      }
+      case App(var fun, var arg) -> {
+        var f = substitute(bindings, fun);
+        var a = substitute(bindings, arg);
+        yield f == fun && a == arg ? type : new App<>(f, a);
+      }
+      case ArrayOf(var elem) -> {
+        var e = substitute(bindings, elem);
+        yield e == elem ? type : new ArrayOf<>(e);
+      }
+      case Lazy(var under) -> {
+        var u = substitute(bindings, under);
+        yield u == under ? type : new Lazy<>(u);
+      }
       case Primitive<V, C, P> p -> p;
       case Const<V, C, P> c -> c;
       case Wildcard<V, C, P> w -> w;
@@ -59,7 +80,7 @@ public final class Unification {
   }
 
   public static <V, C, P> List<ParsedType<V, C, P>> substituteAll(
-      Map<Var<V, C, P>, ParsedType<V, C, P>> map, List<ParsedType<V, C, P>> types) {
-    return types.stream().map(t -> substitute(map, t)).toList();
+      Bindings<V, C, P> bindings, List<ParsedType<V, C, P>> types) {
+    return types.stream().map(t -> substitute(bindings, t)).toList();
   }
 }
@@ -0,0 +1,287 @@
+package com.garciat.typeclasses.impl;
+
+import com.garciat.typeclasses.api.TypeClass.Witness.Overlap;
+import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * The witness index written by the annotation processor: one line per witness constructor, with its
+ * signature already parsed.
+ *
+ * <p>Each top-level class gets its own index resource, listing it and its member classes, so that
+ * an incremental build that recompiles some classes rewrites only their indexes.
+ *
+ * <p>Each line holds tab-separated fields: the binary name of the declaring class, the method name,
+ * the overlap, the comma-separated method type parameters, the comma-separated erased parameter
+ * types, the erased return type, and the comma-separated parameter signatures and return signature.
+ * A type parameter is written as its name, prefixed with {@code &} if it is {@code Out}. Together,
+ * these let the runtime link the method and rebuild its witness constructor without reflecting over
+ * it. A line holding only a binary name lists a class that declares no witness constructors, so
+ * that every class in the compilation is accounted for. A line holding a binary name and {@code
+ * reflect} lists a class with witness constructors that the index cannot express, which must be
+ * found by reflection.
+ *
+ * <p>Signatures are written in prefix form: {@code V<index>;} for a method type parameter, {@code
+ * C<binary name>;} or {@code C<binary name>:<type parameters>;} for a constant, {@code P<name>;}
+ * for a primitive, {@code ?} for a wildcard, and {@code O}, {@code A}, {@code [} and {@code L}
+ * followed by their operands for Out, application, array and Lazy types.
+ */
+public final class WitnessIndex {
+  private WitnessIndex() {}
+
+  public static final String RESOURCE_DIRECTORY = "META-INF/typeclasses/witnesses/";
+
+  public static final String HEADER = "# typeclasses witness index v3";
+
+  public static final String REFLECT = "reflect";
+
+  /** The name of the index resource of the top-level class with the given binary name. */
+  public static String resourceName(String topLevel) {
+    return RESOURCE_DIRECTORY + topLevel + ".idx";
+  }
+
+  public record Entry(
+      String owner,
+      String method,
+      Overlap overlap,
+      List<ParsedType.TyParam<String>> typeParams,
+      List<String> erasedParameterTypes,
+      String erasedReturnType,
+      List<String> parameterTypes,
+      String returnType) {
+    public String format() {
+      return String.join(
+          "\t",
+          owner,
+          method,
+          overlap.name(),
+          formatTypeParams(typeParams),
+          String.join(",", erasedParameterTypes),
+          erasedReturnType,
+          String.join(",", parameterTypes),
+          returnType);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the line is not a well-formed entry
+     */
+    public static Entry parse(String line) {
+      String[] fields = line.split("\t", -1);
+      if (fields.length != 8) {
+        throw new IllegalArgumentException("Malformed witness index entry: " + line);
+      }
+
+      return new Entry(
+          fields[0],
+          fields[1],
+          Overlap.valueOf(fields[2]),
+          parseTypeParams(fields[3]),
+          splitList(fields[4]),
+          fields[5],
+          splitList(fields[6]),
+          fields[7]);
+    }
+  }
+
+  private static String formatTypeParams(List<? extends ParsedType.TyParam<?>> typeParams) {
+    return typeParams.stream().map(ParsedType.TyParam::toString).collect(Collectors.joining(","));
+  }
+
+  private static List<ParsedType.TyParam<String>> parseTypeParams(String field) {
+    return Lists.map(
+        splitList(field),
+        param ->
+            param.startsWith("&")
+                ? new ParsedType.TyParam<>(param.substring(1), true)
+                : new ParsedType.TyParam<>(param, false));
+  }
+
+  private static List<String> splitList(String field) {
+    return field.isEmpty() ? List.of() : Arrays.asList(field.split(","));
+  }
+
+  /** The line listing a class whose witness constructors must be found by reflection. */
+  public static String reflectLine(String owner) {
+    return owner + "\t" + REFLECT;
+  }
+
+  /**
+   * Reads an index into its entries by declaring class name. Classes without witness constructors
+   * map to an empty list, and classes that must be reflected over map to nothing.
+   *
+   * @throws IllegalArgumentException if the index is malformed or of another version
+   */
+  public static Map<String, Maybe<List<Entry>>> read(BufferedReader reader) throws IOException {
+    if (!HEADER.equals(reader.readLine())) {
+      throw new IllegalArgumentException("Not a witness index, or of another version");
+    }
+    Map<String, List<Entry>> entries = new HashMap<>();
+    Set<String> reflected = new HashSet<>();
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      int tab = line.indexOf('\t');
+      if (tab < 0) {
+        entries.putIfAbsent(line, new ArrayList<>());
+      } else if (line.substring(tab + 1).equals(REFLECT)) {
+        reflected.add(line.substring(0, tab));
+      } else {
+        Entry entry = Entry.parse(line);
+        entries.computeIfAbsent(entry.owner(), _ -> new ArrayList<>()).add(entry);
+      }
+    }
+
+    Map<String, Maybe<List<Entry>>> index = new HashMap<>();
+    entries.forEach((owner, list) -> index.put(owner, Maybe.just(list)));
+    reflected.forEach(owner -> index.put(owner, Maybe.nothing()));
+    return index;
+  }
+
+  /**
+   * Writes a type in signature form, given indexes for its method type parameters and names for the
+   * rest.
+   */
+  public static <V, C, P> String encode(
+      ParsedType<V, C, P> type,
+      ToIntFunction<V> varIndex,
+      Function<V, String> varName,
+      Function<C, String> constName,
+      Function<P, String> primName) {
+    StringBuilder out = new StringBuilder();
+    encode(out, type, varIndex, varName, constName, primName);
+    return out.toString();
+  }
+
+  private static <V, C, P> void encode(
+      StringBuilder out,
+      ParsedType<V, C, P> type,
+      ToIntFunction<V> varIndex,
+      Function<V, String> varName,
+      Function<C, String> constName,
+      Function<P, String> primName) {
+    switch (type) {
+      case ParsedType.Var(var ref) ->
+          out.append('V').append(varIndex.applyAsInt(ref.repr())).append(';');
+      case ParsedType.Out(var under) -> {
+        out.append('O');
+        encode(out, under, varIndex, varName, constName, primName);
+      }
+      case ParsedType.App(var fun, var arg) -> {
+        out.append('A');
+        encode(out, fun, varIndex, varName, constName, primName);
+        encode(out, arg, varIndex, varName, constName, primName);
+      }
+      case ParsedType.ArrayOf(var elem) -> {
+        out.append('[');
+        encode(out, elem, varIndex, varName, constName, primName);
+      }
+      case ParsedType.Lazy(var under) -> {
+        out.append('L');
+        encode(out, under, varIndex, varName, constName, primName);
+      }
+      case ParsedType.Const(var repr, var typeParams) -> {
+        out.append('C').append(constName.apply(repr));
+        if (!typeParams.isEmpty()) {
+          out.append(':')
+              .append(
+                  formatTypeParams(
+                      Lists.map(
+                          typeParams,
+                          p -> new ParsedType.TyParam<>(varName.apply(p.repr()), p.isOut()))));
+        }
+        out.append(';');
+      }
+      case ParsedType.Primitive(var repr) ->
+          out.append('P').append(primName.apply(repr)).append(';');
+      case ParsedType.Wildcard() -> out.append('?');
+    }
+  }
+
+  /**
+   * Reads a type written by {@link #encode}, given the method type parameters by index, and
+   * constants by binary name and type parameters.
+   *
+   * @throws IllegalArgumentException if the signature is malformed
+   */
+  public static <V, C, P> ParsedType<V, C, P> decode(
+      String signature,
+      IntFunction<ParsedType.TyParam<V>> var,
+      BiFunction<String, List<ParsedType.TyParam<String>>, ParsedType.Const<V, C, P>> constType,
+      Function<String, P> prim) {
+    Decoder<V, C, P> decoder = new Decoder<>(signature, var, constType, prim);
+    ParsedType<V, C, P> type = decoder.type();
+    if (decoder.pos != signature.length()) {
+      throw new IllegalArgumentException("Trailing input in signature: " + signature);
+    }
+    return type;
+  }
+
+  private static final class Decoder<V, C, P> {
+    private final String input;
+    private final IntFunction<ParsedType.TyParam<V>> var;
+    private final BiFunction<String, List<ParsedType.TyParam<String>>, ParsedType.Const<V, C, P>>
+        constType;
+    private final Function<String, P> prim;
+    private int pos;
+
+    private Decoder(
+        String input,
+        IntFunction<ParsedType.TyParam<V>> var,
+        BiFunction<String, List<ParsedType.TyParam<String>>, ParsedType.Const<V, C, P>> constType,
+        Function<String, P> prim) {
+      this.input = input;
+      this.var = var;
+      this.constType = constType;
+      this.prim = prim;
+    }
+
+    private ParsedType<V, C, P> type() {
+      if (pos >= input.length()) {
+        throw new IllegalArgumentException("Unexpected end of signature: " + input);
+      }
+      return switch (input.charAt(pos++)) {
+        case 'V' -> new ParsedType.Var<>(var.apply(Integer.parseInt(name())));
+        case 'O' -> new ParsedType.Out<>(type());
+        case 'A' -> {
+          ParsedType<V, C, P> fun = type();
+          yield new ParsedType.App<>(fun, type());
+        }
+        case '[' -> new ParsedType.ArrayOf<>(type());
+        case 'L' -> new ParsedType.Lazy<>(type());
+        case 'C' -> {
+          String name = name();
+          int colon = name.indexOf(':');
+          yield colon < 0
+              ? constType.apply(name, List.of())
+              : constType.apply(
+                  name.substring(0, colon), parseTypeParams(name.substring(colon + 1)));
+        }
+        case 'P' -> new ParsedType.Primitive<>(prim.apply(name()));
+        case '?' -> new ParsedType.Wildcard<>();
+        default -> throw new IllegalArgumentException("Malformed signature: " + input);
+      };
+    }
+
+    private String name() {
+      int end = input.indexOf(';', pos);
+      if (end < 0) {
+        throw new IllegalArgumentException("Unterminated name in signature: " + input);
+      }
+      String name = input.substring(pos, end);
+      pos = end + 1;
+      return name;
+    }
+  }
+}
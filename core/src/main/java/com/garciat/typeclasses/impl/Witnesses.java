@@ -1,6 +1,7 @@
 package com.garciat.typeclasses.impl;
 
 import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Maybe;
 import java.util.List;
 import java.util.function.Function;
 
@@ -24,4 +25,19 @@ final class Witnesses {
           List.of();
     };
   }
+
+  /** The type class of a goal, i.e. the constant at the head of its type, if any. */
+  static <V, C, P> Maybe<C> typeClass(ParsedType<V, C, P> target) {
+    return switch (target) {
+      case ParsedType.App(var fun, _) -> typeClass(fun);
+      case ParsedType.Const<V, C, P> c -> Maybe.just(c.repr());
+      case ParsedType.Lazy(var under) -> typeClass(under);
+      case ParsedType.Var(_),
+          ParsedType.Out(_),
+          ParsedType.ArrayOf(_),
+          ParsedType.Primitive(_),
+          ParsedType.Wildcard() ->
+          Maybe.nothing();
+    };
+  }
 }
@@ -0,0 +1,256 @@
+package com.garciat.typeclasses.processor;
+
+import static com.garciat.typeclasses.impl.utils.Streams.isInstanceOf;
+
+import com.garciat.typeclasses.api.GeneratedWitnesses;
+import com.garciat.typeclasses.api.Lazy;
+import com.garciat.typeclasses.impl.Resolution;
+import com.garciat.typeclasses.impl.Steps;
+import com.garciat.typeclasses.impl.Steps.Step;
+import com.garciat.typeclasses.impl.Types;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Generated;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.ModuleElement;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+/**
+ * Writes the {@link GeneratedWitnesses} source for a top-level class: one factory per witness type
+ * summoned in it, calling the witness constructors directly with straight-line code.
+ *
+ * <p>Witness types whose constructors are not accessible from the top-level class's package are
+ * skipped, and left to runtime resolution.
+ */
+final class GeneratedWitnessesWriter {
+  private final Elements elements;
+  private final javax.lang.model.util.Types types;
+  private final Filer filer;
+
+  GeneratedWitnessesWriter(Elements elements, javax.lang.model.util.Types types, Filer filer) {
+    this.elements = elements;
+    this.types = types;
+    this.filer = filer;
+  }
+
+  /** Writes the factories for the given resolved witness types, if any can be generated. */
+  void write(TypeElement topLevel, List<Resolved> resolved, Consumer<String> onWarning) {
+    PackageElement pkg = elements.getPackageOf(topLevel);
+
+    Map<String, List<Step<Static.Method, Static.Var, Static.Const, Static.Prim>>> factories =
+        new LinkedHashMap<>();
+
+    for (Resolved r : resolved) {
+      if (key(r.witnessType()) instanceof Maybe.Just(var key) && !factories.containsKey(key)) {
+        List<Step<Static.Method, Static.Var, Static.Const, Static.Prim>> steps =
+            Steps.compile(r.tree());
+        if (steps.stream().allMatch(step -> isAccessible(step, pkg))) {
+          factories.put(key, steps);
+        }
+      }
+    }
+
+    if (factories.isEmpty()) {
+      return;
+    }
+
+    String simpleName = topLevel.getSimpleName() + GeneratedWitnesses.CLASS_NAME_SUFFIX;
+    String qualifiedName = pkg.isUnnamed() ? simpleName : pkg.getQualifiedName() + "." + simpleName;
+
+    try (Writer writer = filer.createSourceFile(qualifiedName, topLevel).openWriter();
+        PrintWriter out = new PrintWriter(writer)) {
+      writeClass(out, pkg, simpleName, factories);
+    } catch (IOException e) {
+      onWarning.accept("Could not write generated witnesses " + qualifiedName + ": " + e);
+    }
+  }
+
+  record Resolved(
+      TypeMirror witnessType,
+      Resolution.Result<Static.Method, Static.Var, Static.Const, Static.Prim> tree) {}
+
+  private void writeClass(
+      PrintWriter out,
+      PackageElement pkg,
+      String simpleName,
+      Map<String, List<Step<Static.Method, Static.Var, Static.Const, Static.Prim>>> factories) {
+    if (!pkg.isUnnamed()) {
+      out.println("package " + pkg.getQualifiedName() + ";");
+      out.println();
+    }
+
+    out.println(
+        "@%s(\"%s\")"
+            .formatted(Generated.class.getName(), WitnessResolutionChecker.class.getName()));
+    out.println(
+        "public final class %s implements %s {"
+            .formatted(simpleName, GeneratedWitnesses.class.getCanonicalName()));
+
+    out.println("  @Override");
+    out.println(
+        "  public java.util.Map<String, %s<?>> factories() {".formatted(Supplier.class.getName()));
+    out.println("    return java.util.Map.ofEntries(");
+    int index = 0;
+    for (String key : factories.keySet()) {
+      out.println(
+          "        java.util.Map.<String, %s<?>>entry(\"%s\", %s::witness%d)%s"
+              .formatted(
+                  Supplier.class.getName(),
+                  escape(key),
+                  simpleName,
+                  index,
+                  index == factories.size() - 1 ? ");" : ","));
+      index++;
+    }
+    out.println("  }");
+
+    index = 0;
+    for (List<Step<Static.Method, Static.Var, Static.Const, Static.Prim>> steps :
+        factories.values()) {
+      out.println();
+      writeFactory(out, index++, steps);
+    }
+
+    out.println();
+    out.println(
+        "  private static %s<Object> knot(Object[] slots, int slot) {"
+            .formatted(Lazy.class.getCanonicalName()));
+    out.println("    return () -> {");
+    out.println("      Object instance = slots[slot];");
+    out.println("      if (instance == null) {");
+    out.println(
+        "        throw new IllegalStateException(\"Lazy witness was forced before it was"
+            + " constructed\");");
+    out.println("      }");
+    out.println("      return instance;");
+    out.println("    };");
+    out.println("  }");
+    out.println("}");
+  }
+
+  private void writeFactory(
+      PrintWriter out,
+      int index,
+      List<Step<Static.Method, Static.Var, Static.Const, Static.Prim>> steps) {
+    out.println("  @SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+    out.println("  private static Object witness%d() {".formatted(index));
+    out.println("    Object[] slots = new Object[%d];".formatted(steps.size()));
+
+    for (int i = 0; i < steps.size(); i++) {
+      switch (steps.get(i)) {
+        case Step.Construct(var match, var argSlots) -> {
+          ExecutableElement method = match.ctor().method().java();
+          TypeElement owner = (TypeElement) method.getEnclosingElement();
+
+          StringBuilder args = new StringBuilder();
+          for (int j = 0; j < argSlots.length; j++) {
+            TypeMirror paramType = types.erasure(method.getParameters().get(j).asType());
+            args.append(j == 0 ? "" : ", ")
+                .append("(%s) slots[%d]".formatted(sourceName(paramType), argSlots[j]));
+          }
+
+          out.println(
+              "    slots[%d] = %s.%s(%s);"
+                  .formatted(i, owner.getQualifiedName(), method.getSimpleName(), args));
+        }
+        case Step.Knot(_, var slot) ->
+            out.println("    slots[%d] = knot(slots, %d);".formatted(i, slot));
+      }
+    }
+
+    out.println("    return slots[%d];".formatted(steps.size() - 1));
+    out.println("  }");
+  }
+
+  private Maybe<String> key(TypeMirror witnessType) {
+    return Types.key(
+        StaticWitnessSystem.parse(witnessType),
+        c -> elements.getBinaryName(c.java()).toString(),
+        p -> p.java().getKind().name().toLowerCase(Locale.ROOT));
+  }
+
+  private boolean isAccessible(
+      Step<Static.Method, Static.Var, Static.Const, Static.Prim> step, PackageElement pkg) {
+    return switch (step) {
+      case Step.Construct(var match, _) -> {
+        ExecutableElement method = match.ctor().method().java();
+        yield isAccessible(method.getEnclosingElement(), pkg)
+            && method.getParameters().stream()
+                .allMatch(p -> isAccessible(types.erasure(p.asType()), pkg));
+      }
+      case Step.Knot(_, _) -> true;
+    };
+  }
+
+  private boolean isAccessible(TypeMirror erased, PackageElement pkg) {
+    return switch (erased) {
+      case PrimitiveType _ -> true;
+      case ArrayType at -> isAccessible(at.getComponentType(), pkg);
+      case DeclaredType dt -> isAccessible(dt.asElement(), pkg);
+      default -> false;
+    };
+  }
+
+  /** Whether generated code in the given package can refer to the given type by name. */
+  private boolean isAccessible(Element element, PackageElement pkg) {
+    if (!(element instanceof TypeElement type)) {
+      return false;
+    }
+
+    boolean named =
+        type.getNestingKind() == NestingKind.TOP_LEVEL
+            || type.getNestingKind() == NestingKind.MEMBER;
+    boolean visible =
+        type.getModifiers().contains(Modifier.PUBLIC)
+            ? isExported(type, pkg)
+            : !type.getModifiers().contains(Modifier.PRIVATE)
+                && elements.getPackageOf(type).equals(pkg);
+
+    return named
+        && visible
+        && (type.getNestingKind() == NestingKind.TOP_LEVEL
+            || isAccessible(type.getEnclosingElement(), pkg));
+  }
+
+  private boolean isExported(TypeElement type, PackageElement pkg) {
+    ModuleElement module = elements.getModuleOf(type);
+    if (module == null || module.isUnnamed() || module.equals(elements.getModuleOf(pkg))) {
+      return true;
+    }
+    PackageElement typePkg = elements.getPackageOf(type);
+    return module.getDirectives().stream()
+        .flatMap(isInstanceOf(ModuleElement.ExportsDirective.class))
+        .anyMatch(e -> e.getPackage().equals(typePkg) && e.getTargetModules() == null);
+  }
+
+  private String sourceName(TypeMirror erased) {
+    return switch (erased) {
+      case PrimitiveType pt -> pt.getKind().name().toLowerCase(Locale.ROOT);
+      case ArrayType at -> sourceName(at.getComponentType()) + "[]";
+      case DeclaredType dt -> ((TypeElement) dt.asElement()).getQualifiedName().toString();
+      default -> throw new IllegalArgumentException("Unsupported erased type: " + erased);
+    };
+  }
+
+  private static String escape(String s) {
+    return s.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
@@ -45,7 +45,7 @@ public final class StaticWitnessSystem {
     return Resolution.resolve(StaticWitnessSystem::findWitnesses, parse(target));
   }
 
-  private static List<WitnessConstructor<Static.Method, Static.Var, Static.Const, Static.Prim>>
+  static List<WitnessConstructor<Static.Method, Static.Var, Static.Const, Static.Prim>>
       findWitnesses(Static.Const target) {
     return target.java().getEnclosedElements().stream()
         .flatMap(isInstanceOf(ExecutableElement.class))
@@ -71,7 +71,7 @@ public final class StaticWitnessSystem {
     }
   }
 
-  private static ParsedType<Static.Var, Static.Const, Static.Prim> parse(TypeMirror type) {
+  public static ParsedType<Static.Var, Static.Const, Static.Prim> parse(TypeMirror type) {
     return switch (type) {
       case DeclaredType dt when parseTagType(dt) instanceof Maybe.Just(var realType) ->
           constType(realType);
@@ -41,6 +41,12 @@ interface TreeParser<T, R> {
             .flatMap(r -> predicate.parse(trees, current, r).map(_ -> r));
   }
 
+  default TreeParser<T, R> orElse(TreeParser<T, R> other) {
+    return (trees, current, input) ->
+        this.parse(trees, current, input)
+            .fold(() -> other.parse(trees, current, input), Maybe::just);
+  }
+
   static <T> TreeParser<T, T> identity() {
     return (_, _, input) -> Maybe.just(input);
   }
@@ -0,0 +1,164 @@
+package com.garciat.typeclasses.processor;
+
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.WitnessConstructor;
+import com.garciat.typeclasses.impl.WitnessIndex;
+import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.StandardLocation;
+
+/**
+ * Collects the witness constructors declared in the compilation, and writes them to one {@link
+ * WitnessIndex} resource per top-level class once processing is over.
+ *
+ * <p>A class is indexed with all of its witness constructors or none of them: if one cannot be
+ * expressed, the class is listed as one to reflect over, so that the runtime can tell it apart from
+ * classes that were not compiled with the processor.
+ */
+final class WitnessIndexWriter {
+  private final Elements elements;
+  private final javax.lang.model.util.Types types;
+  private final Filer filer;
+
+  /** Index entries per top-level class, for it and each of its member classes. */
+  private final Map<TypeElement, Map<TypeElement, Maybe<List<WitnessIndex.Entry>>>> entries =
+      new LinkedHashMap<>();
+
+  WitnessIndexWriter(Elements elements, javax.lang.model.util.Types types, Filer filer) {
+    this.elements = elements;
+    this.types = types;
+    this.filer = filer;
+  }
+
+  /**
+   * Adds the given top-level class and its member classes, with the witness constructors each
+   * declares directly, if any.
+   */
+  void add(TypeElement topLevel) {
+    if (entries.containsKey(topLevel)) {
+      return;
+    }
+
+    Map<TypeElement, Maybe<List<WitnessIndex.Entry>>> classes = new LinkedHashMap<>();
+    addClass(classes, topLevel);
+    entries.put(topLevel, classes);
+  }
+
+  private void addClass(
+      Map<TypeElement, Maybe<List<WitnessIndex.Entry>>> classes, TypeElement owner) {
+    classes.put(owner, entries(owner));
+    for (TypeElement member : ElementFilter.typesIn(owner.getEnclosedElements())) {
+      addClass(classes, member);
+    }
+  }
+
+  private Maybe<List<WitnessIndex.Entry>> entries(TypeElement owner) {
+    List<WitnessIndex.Entry> ownerEntries = new ArrayList<>();
+    for (WitnessConstructor<Static.Method, Static.Var, Static.Const, Static.Prim> ctor :
+        StaticWitnessSystem.findWitnesses(new Static.Const(owner))) {
+      try {
+        ownerEntries.add(entry(owner, ctor));
+      } catch (IllegalArgumentException e) {
+        // Not expressible in the index; leave the whole class to reflection
+        return Maybe.nothing();
+      }
+    }
+    return Maybe.just(ownerEntries);
+  }
+
+  void write(Consumer<String> onWarning) {
+    entries.forEach((topLevel, classes) -> write(topLevel, classes, onWarning));
+  }
+
+  private void write(
+      TypeElement topLevel,
+      Map<TypeElement, Maybe<List<WitnessIndex.Entry>>> classes,
+      Consumer<String> onWarning) {
+    String resourceName = WitnessIndex.resourceName(elements.getBinaryName(topLevel).toString());
+    try (Writer writer =
+            filer
+                .createResource(StandardLocation.CLASS_OUTPUT, "", resourceName, topLevel)
+                .openWriter();
+        PrintWriter out = new PrintWriter(writer)) {
+      out.println(WitnessIndex.HEADER);
+      classes.forEach(
+          (owner, ownerEntries) -> {
+            switch (ownerEntries) {
+              case Maybe.Just(var list) when list.isEmpty() ->
+                  out.println(elements.getBinaryName(owner));
+              case Maybe.Just(var list) -> list.forEach(entry -> out.println(entry.format()));
+              case Maybe.Nothing() ->
+                  out.println(WitnessIndex.reflectLine(elements.getBinaryName(owner).toString()));
+            }
+          });
+    } catch (IOException e) {
+      onWarning.accept("Could not write witness index " + resourceName + ": " + e);
+    }
+  }
+
+  private WitnessIndex.Entry entry(
+      TypeElement owner,
+      WitnessConstructor<Static.Method, Static.Var, Static.Const, Static.Prim> ctor) {
+    ExecutableElement method = ctor.method().java();
+    List<? extends TypeParameterElement> vars = method.getTypeParameters();
+
+    return new WitnessIndex.Entry(
+        elements.getBinaryName(owner).toString(),
+        method.getSimpleName().toString(),
+        ctor.overlap(),
+        Lists.map(ctor.typeParams(), p -> new ParsedType.TyParam<>(name(p.repr()), p.isOut())),
+        Lists.map(method.getParameters(), p -> erasedName(types.erasure(p.asType()))),
+        erasedName(types.erasure(method.getReturnType())),
+        Lists.map(ctor.paramTypes(), t -> encode(t, vars)),
+        encode(ctor.returnType(), vars));
+  }
+
+  private String encode(
+      ParsedType<Static.Var, Static.Const, Static.Prim> type,
+      List<? extends TypeParameterElement> vars) {
+    return WitnessIndex.encode(
+        type,
+        v -> {
+          int index = vars.indexOf(v.java().asElement());
+          if (index < 0) {
+            throw new IllegalArgumentException("Not a method type parameter: " + v);
+          }
+          return index;
+        },
+        WitnessIndexWriter::name,
+        c -> elements.getBinaryName(c.java()).toString(),
+        p -> p.java().getKind().name().toLowerCase(Locale.ROOT));
+  }
+
+  private static String name(Static.Var var) {
+    return var.java().asElement().getSimpleName().toString();
+  }
+
+  private String erasedName(TypeMirror erased) {
+    return switch (erased) {
+      case PrimitiveType pt -> pt.getKind().name().toLowerCase(Locale.ROOT);
+      case ArrayType at -> erasedName(at.getComponentType()) + "[]";
+      case DeclaredType dt -> elements.getBinaryName((TypeElement) dt.asElement()).toString();
+      default -> throw new IllegalArgumentException("Unsupported erased type: " + erased);
+    };
+  }
+}
@@ -9,6 +9,8 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -18,40 +20,76 @@ import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
 
 @SupportedAnnotationTypes("*")
 @SupportedSourceVersion(SourceVersion.RELEASE_25)
 public final class WitnessResolutionChecker extends AbstractProcessor {
   private static final Method WITNESS_METHOD;
+  private static final Method FRESH_WITNESS_METHOD;
 
   static {
     try {
       WITNESS_METHOD = TypeClasses.class.getMethod("witness", Ty.class);
+      FRESH_WITNESS_METHOD = TypeClasses.class.getMethod("freshWitness", Ty.class);
     } catch (NoSuchMethodException e) {
       throw new RuntimeException(e);
     }
   }
 
   private Trees trees;
+  private GeneratedWitnessesWriter writer;
+  private WitnessIndexWriter indexWriter;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
     this.trees = Trees.instance(jbUnwrap(ProcessingEnvironment.class, processingEnv));
+    this.writer =
+        new GeneratedWitnessesWriter(
+            processingEnv.getElementUtils(),
+            processingEnv.getTypeUtils(),
+            processingEnv.getFiler());
+    this.indexWriter =
+        new WitnessIndexWriter(
+            processingEnv.getElementUtils(),
+            processingEnv.getTypeUtils(),
+            processingEnv.getFiler());
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
     for (Element rootElement : roundEnv.getRootElements()) {
-      new WitnessCallScanner(trees).scan(trees.getPath(rootElement), null);
+      WitnessCallScanner scanner = new WitnessCallScanner(trees);
+      scanner.scan(trees.getPath(rootElement), null);
+
+      if (rootElement instanceof TypeElement topLevel) {
+        writer.write(
+            topLevel,
+            scanner.resolved,
+            message -> processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message));
+      }
+    }
+
+    for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      indexWriter.add(type);
+    }
+
+    if (roundEnv.processingOver()) {
+      indexWriter.write(
+          message -> processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message));
     }
     return false;
   }
 
-  /** Scanner that finds calls to TypeClasses.witness() and validates them. */
+  /**
+   * Scanner that finds calls to TypeClasses.witness() and freshWitness(), validates them, and
+   * collects their resolutions.
+   */
   private static class WitnessCallScanner extends TreePathScanner<Void, Void> {
     private final Trees trees;
+    private final List<GeneratedWitnessesWriter.Resolved> resolved = new ArrayList<>();
 
     private WitnessCallScanner(Trees trees) {
       this.trees = trees;
@@ -62,7 +100,9 @@ public final class WitnessResolutionChecker extends AbstractProcessor {
       TreeParser.<MethodInvocationTree>identity()
           .guard(
               TreeParser.<MethodInvocationTree>currentElement()
-                  .flatMap(TreeParser.methodMatches(WITNESS_METHOD)))
+                  .flatMap(
+                      TreeParser.methodMatches(WITNESS_METHOD)
+                          .orElse(TreeParser.methodMatches(FRESH_WITNESS_METHOD))))
           .flatMap(TreeParser.unaryCallArgument())
           .flatMap(TreeParser.newAnonymousClassBody())
           .flatMap(TreeParser.singleImplementsClause())
@@ -86,7 +126,10 @@ public final class WitnessResolutionChecker extends AbstractProcessor {
                                 getCurrentPath().getCompilationUnit());
                             return unit();
                           },
-                          _ -> unit()));
+                          tree -> {
+                            resolved.add(new GeneratedWitnessesWriter.Resolved(witnessType, tree));
+                            return unit();
+                          }));
 
       return super.visitMethodInvocation(node, arg);
     }
@@ -0,0 +1,22 @@
+package com.garciat.typeclasses.runtime;
+
+/**
+ * Decides how many witness instances a {@link WitnessCache} partition keeps. Entries are evicted
+ * least recently used first, for as long as the policy asks for it.
+ */
+@FunctionalInterface
+public interface EvictionPolicy {
+  /** Whether a partition holding the given number of entries should evict one. */
+  boolean shouldEvict(int size);
+
+  static EvictionPolicy unbounded() {
+    return _ -> false;
+  }
+
+  static EvictionPolicy maxSize(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    return size -> size > maxSize;
+  }
+}
@@ -0,0 +1,71 @@
+package com.garciat.typeclasses.runtime;
+
+import com.garciat.typeclasses.api.GeneratedWitnesses;
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.Types;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/** Looks up the {@link GeneratedWitnesses} emitted by the annotation processor. */
+public final class GeneratedFactories {
+  private GeneratedFactories() {}
+
+  /**
+   * Generated factories per top-level class. Loaded once per class and released together with it.
+   */
+  private static final ClassValue<Map<String, Supplier<?>>> FACTORIES =
+      new ClassValue<>() {
+        @Override
+        protected Map<String, Supplier<?>> computeValue(Class<?> topLevel) {
+          return load(topLevel);
+        }
+      };
+
+  /**
+   * Finds the generated factory for the given witness type, among those generated for the top-level
+   * class that declares the given call site class.
+   */
+  public static Maybe<Supplier<?>> find(
+      Class<?> callSite, ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> witnessType) {
+    Map<String, Supplier<?>> factories = FACTORIES.get(callSite.getNestHost());
+    if (factories.isEmpty()) {
+      return Maybe.nothing();
+    }
+    return key(witnessType)
+        .flatMap(
+            key -> factories.containsKey(key) ? Maybe.just(factories.get(key)) : Maybe.nothing());
+  }
+
+  public static Maybe<String> key(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> witnessType) {
+    return Types.key(witnessType, c -> c.java().getName(), p -> p.java().getName());
+  }
+
+  private static Map<String, Supplier<?>> load(Class<?> topLevel) {
+    if (topLevel.isHidden() || topLevel.getClassLoader() == null) {
+      return Map.of();
+    }
+    try {
+      Class<?> generated =
+          Class.forName(
+              topLevel.getName() + GeneratedWitnesses.CLASS_NAME_SUFFIX,
+              true,
+              topLevel.getClassLoader());
+      MethodHandle constructor =
+          MethodHandles.publicLookup()
+              .findConstructor(generated, MethodType.methodType(void.class));
+      if (constructor.invoke() instanceof GeneratedWitnesses witnesses) {
+        return Map.copyOf(witnesses.factories());
+      } else {
+        return Map.of();
+      }
+    } catch (Throwable e) {
+      // No usable generated class; witnesses are resolved at runtime instead
+      return Map.of();
+    }
+  }
+}
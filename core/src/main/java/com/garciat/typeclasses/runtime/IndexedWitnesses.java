@@ -0,0 +1,198 @@
+package com.garciat.typeclasses.runtime;
+
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.ParsedType.Const;
+import com.garciat.typeclasses.impl.ParsedType.TyParam;
+import com.garciat.typeclasses.impl.WitnessConstructor;
+import com.garciat.typeclasses.impl.WitnessIndex;
+import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up witness constructors in the {@link WitnessIndex} resources written by the annotation
+ * processor, so that indexed classes need neither a scan of their declared methods nor a parse of
+ * their generic signatures. Their methods are linked with method handles, by erased type, and the
+ * classes named by their signatures are loaded by name.
+ *
+ * <p>The index of a top-level class is read once, the first time it or one of its member classes is
+ * looked up. A class that is listed for reflection, or whose entries no longer match it, is left to
+ * reflection.
+ */
+public final class IndexedWitnesses {
+  private IndexedWitnesses() {}
+
+  /** What the witness indexes say about a class. */
+  public sealed interface Lookup {
+    /** The class is indexed with the given witness constructors. */
+    record Indexed(
+        List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+            constructors)
+        implements Lookup {}
+
+    /**
+     * The class was compiled with the processor, but its witness constructors must be reflected.
+     */
+    record Reflect() implements Lookup {}
+
+    /** The class is in no index, e.g. because it was not compiled with the processor. */
+    record Unindexed() implements Lookup {}
+  }
+
+  /**
+   * Index entries by declaring class name, per top-level class, or nothing for classes to reflect
+   * over. Released together with the top-level class, and holds no classes, only names.
+   */
+  private static final ClassValue<Map<String, Maybe<List<WitnessIndex.Entry>>>> ENTRIES =
+      new ClassValue<>() {
+        @Override
+        protected Map<String, Maybe<List<WitnessIndex.Entry>>> computeValue(Class<?> topLevel) {
+          return read(topLevel);
+        }
+      };
+
+  /** Looks up the witness constructors declared by the given class. */
+  public static Lookup find(Class<?> type) {
+    ClassLoader loader = type.getClassLoader();
+    if (loader == null) {
+      return new Lookup.Unindexed();
+    }
+    return switch (ENTRIES.get(type.getNestHost()).get(type.getName())) {
+      case null -> new Lookup.Unindexed();
+      case Maybe.Nothing() -> new Lookup.Reflect();
+      case Maybe.Just(var entries) ->
+          constructors(type, entries).<Lookup>fold(Lookup.Reflect::new, Lookup.Indexed::new);
+    };
+  }
+
+  /**
+   * The witness constructors described by the given index entries for the given class, or nothing
+   * if any entry does not match the class.
+   */
+  public static Maybe<
+          List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>>
+      constructors(Class<?> type, List<WitnessIndex.Entry> entries) {
+    List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>> ctors =
+        new ArrayList<>(entries.size());
+    try {
+      for (WitnessIndex.Entry entry : entries) {
+        ctors.add(constructor(type, entry));
+      }
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      // Stale or foreign entry; reflect over the class instead
+      return Maybe.nothing();
+    }
+    return Maybe.just(List.copyOf(ctors));
+  }
+
+  /**
+   * Links the entry's method by its erased type and rebuilds its witness constructor from the
+   * entry, without reflecting over the method or its generic signature.
+   */
+  private static WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>
+      constructor(Class<?> type, WitnessIndex.Entry entry) throws ReflectiveOperationException {
+    ClassLoader loader = type.getClassLoader();
+
+    Class<?>[] erasures = new Class<?>[entry.erasedParameterTypes().size()];
+    for (int i = 0; i < erasures.length; i++) {
+      erasures[i] = classFor(entry.erasedParameterTypes().get(i), loader);
+    }
+    if (erasures.length != entry.parameterTypes().size()) {
+      throw new IllegalArgumentException("Malformed witness index entry: " + entry.format());
+    }
+
+    Runtime.Method method =
+        Runtime.Method.findStatic(
+            type,
+            entry.method(),
+            MethodType.methodType(classFor(entry.erasedReturnType(), loader), erasures));
+
+    List<TyParam<Runtime.Var>> typeParams = typeParams(method, entry.typeParams());
+
+    List<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>> paramTypes =
+        new ArrayList<>(erasures.length);
+    for (String signature : entry.parameterTypes()) {
+      paramTypes.add(decode(signature, typeParams, loader));
+    }
+
+    return new WitnessConstructor<>(
+        method,
+        entry.overlap(),
+        typeParams,
+        List.copyOf(paramTypes),
+        decode(entry.returnType(), typeParams, loader));
+  }
+
+  private static ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> decode(
+      String signature, List<TyParam<Runtime.Var>> typeParams, ClassLoader loader) {
+    return WitnessIndex.decode(
+        signature,
+        typeParams::get,
+        (name, params) -> {
+          Class<?> cls = load(name, loader);
+          return new Const<>(new Runtime.Const(cls), typeParams(cls, params));
+        },
+        name -> new Runtime.Prim(load(name, loader)));
+  }
+
+  private static List<TyParam<Runtime.Var>> typeParams(
+      Object declaration, List<TyParam<String>> params) {
+    return Lists.map(params, p -> new TyParam<>(new Runtime.Var(declaration, p.repr()), p.isOut()));
+  }
+
+  private static Class<?> load(String name, ClassLoader loader) {
+    try {
+      return classFor(name, loader);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Unknown class in witness index: " + name, e);
+    }
+  }
+
+  /** The class for an erased type name as written by the processor, e.g. {@code int[]}. */
+  private static Class<?> classFor(String name, ClassLoader loader) throws ClassNotFoundException {
+    if (name.endsWith("[]")) {
+      return classFor(name.substring(0, name.length() - 2), loader).arrayType();
+    }
+    return switch (name) {
+      case "boolean" -> boolean.class;
+      case "byte" -> byte.class;
+      case "short" -> short.class;
+      case "char" -> char.class;
+      case "int" -> int.class;
+      case "long" -> long.class;
+      case "float" -> float.class;
+      case "double" -> double.class;
+      case "void" -> void.class;
+      default -> Class.forName(name, false, loader);
+    };
+  }
+
+  /**
+   * Reads the index of the given top-level class. If several are visible to its loader, the first
+   * one wins, as the first class file on the class path would.
+   */
+  private static Map<String, Maybe<List<WitnessIndex.Entry>>> read(Class<?> topLevel) {
+    ClassLoader loader = topLevel.getClassLoader();
+    URL url =
+        loader == null ? null : loader.getResource(WitnessIndex.resourceName(topLevel.getName()));
+    return url == null ? Map.of() : read(url);
+  }
+
+  private static Map<String, Maybe<List<WitnessIndex.Entry>>> read(URL url) {
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+      return WitnessIndex.read(reader);
+    } catch (IOException | IllegalArgumentException e) {
+      // Unreadable or outdated indexes are ignored; their classes are reflected over instead
+      return Map.of();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.garciat.typeclasses.runtime;
+
+import java.util.Locale;
+
+/**
+ * What runtime resolution does for a class that is missing from the witness index written by the
+ * annotation processor, i.e. one that was not compiled with it.
+ *
+ * <p>Defaults to the value of the {@code typeclasses.reflectionMode} system property, e.g. {@code
+ * -Dtypeclasses.reflectionMode=forbidden}, or {@link #FALLBACK} if it is not set.
+ */
+public enum ReflectionMode {
+  /** Finds the class's witness constructors by reflecting over its declared methods. */
+  FALLBACK,
+
+  /**
+   * Assumes that every class declaring witness constructors was indexed, so that unindexed classes
+   * declare none. Resolution then only scans declared methods and parses generic signatures of the
+   * classes that the index lists for reflection, because it cannot express their witness
+   * constructors.
+   */
+  CLOSED_WORLD,
+
+  /**
+   * Like {@link #CLOSED_WORLD}, but looking up an unindexed class, or one listed for reflection,
+   * fails with an {@link IllegalStateException}, so that tests can prove that no reflective
+   * fallback is needed.
+   *
+   * <p>Indexed classes are then looked up without reflection: their witness constructors are
+   * rebuilt from the index and linked with method handles by erased type. Only the classes named by
+   * the index are loaded by name.
+   */
+  FORBIDDEN;
+
+  public static final String PROPERTY = "typeclasses.reflectionMode";
+
+  static ReflectionMode fromSystemProperty() {
+    String value = System.getProperty(PROPERTY);
+    return value == null
+        ? FALLBACK
+        : valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+  }
+}
@@ -0,0 +1,32 @@
+package com.garciat.typeclasses.runtime;
+
+/**
+ * Receives the outcome of every runtime witness resolution and instantiation, e.g. to feed a
+ * metrics system. Registered with {@link ResolutionListeners#add}.
+ *
+ * <p>Called on the resolving thread, possibly concurrently. Witnesses served from the cache are
+ * neither resolved nor instantiated, and are not reported.
+ */
+public interface ResolutionListener {
+  /**
+   * A resolution of a single target type.
+   *
+   * @param goals the goals searched, excluding those answered from earlier in the resolution
+   * @param maxDepth the deepest nesting of searched goals, counting the target as 1
+   */
+  record Resolved(
+      String targetType,
+      boolean resolved,
+      int goals,
+      int candidatesAttempted,
+      int unifications,
+      int maxDepth,
+      long nanos) {}
+
+  /** An instantiation of a witness for a target type, from a resolved plan or generated code. */
+  record Instantiated(String targetType, long nanos) {}
+
+  default void resolved(Resolved resolution) {}
+
+  default void instantiated(Instantiated instantiation) {}
+}
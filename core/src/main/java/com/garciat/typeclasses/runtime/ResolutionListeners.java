@@ -0,0 +1,62 @@
+package com.garciat.typeclasses.runtime;
+
+import com.garciat.typeclasses.impl.ParsedType;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The registered {@link ResolutionListener}s. While none is registered, resolution and
+ * instantiation do no work on their behalf beyond reading a field.
+ */
+public final class ResolutionListeners {
+  private ResolutionListeners() {}
+
+  private static volatile ResolutionListener[] listeners = {};
+
+  private static final ReentrantLock listenersLock = new ReentrantLock();
+
+  public static void add(ResolutionListener listener) {
+    listenersLock.lock();
+    try {
+      ResolutionListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+      added[listeners.length] = listener;
+      listeners = added;
+    } finally {
+      listenersLock.unlock();
+    }
+  }
+
+  /** Removes the given listener, if registered. */
+  public static void remove(ResolutionListener listener) {
+    listenersLock.lock();
+    try {
+      listeners =
+          Arrays.stream(listeners).filter(l -> l != listener).toArray(ResolutionListener[]::new);
+    } finally {
+      listenersLock.unlock();
+    }
+  }
+
+  static ResolutionListener[] current() {
+    return listeners;
+  }
+
+  /** Runs the given witness factory, reporting its duration to the listeners, if any. */
+  public static Object instantiate(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target, Supplier<?> factory) {
+    ResolutionListener[] current = listeners;
+    if (current.length == 0) {
+      return factory.get();
+    }
+
+    long start = System.nanoTime();
+    Object instance = factory.get();
+    var instantiated =
+        new ResolutionListener.Instantiated(target.format(), System.nanoTime() - start);
+    for (ResolutionListener listener : current) {
+      listener.instantiated(instantiated);
+    }
+    return instance;
+  }
+}
@@ -0,0 +1,113 @@
+package com.garciat.typeclasses.runtime;
+
+import com.garciat.typeclasses.impl.ParsedType;
+import com.garciat.typeclasses.impl.Resolution;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Observes the goals of a runtime resolution on behalf of the JFR events in {@link WitnessEvents}
+ * and the registered {@link ResolutionListener}s. Each target is reported separately: its goal is
+ * the root of the goals searched for it, and targets are resolved one at a time.
+ */
+final class ResolutionObserver
+    implements Resolution.Listener<Runtime.Var, Runtime.Const, Runtime.Prim> {
+  private final ResolutionListener[] listeners;
+  private final boolean goalEvents;
+
+  /** The target being resolved. Read by forked tasks, which start after it is set. */
+  private volatile @Nullable Root root;
+
+  private ResolutionObserver(ResolutionListener[] listeners, boolean goalEvents) {
+    this.listeners = listeners;
+    this.goalEvents = goalEvents;
+  }
+
+  /** An observer for a new resolution, or null if nothing would observe it. */
+  static @Nullable ResolutionObserver start() {
+    ResolutionListener[] listeners = ResolutionListeners.current();
+    boolean resolutionEvents = new WitnessEvents.ResolutionEvent().isEnabled();
+    boolean goalEvents = new WitnessEvents.GoalEvent().isEnabled();
+    if (listeners.length == 0 && !resolutionEvents && !goalEvents) {
+      return null;
+    }
+    return new ResolutionObserver(listeners, goalEvents);
+  }
+
+  private static final class Root {
+    private final WitnessEvents.ResolutionEvent event = new WitnessEvents.ResolutionEvent();
+    private final long start = System.nanoTime();
+    private final AtomicInteger goals = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+  }
+
+  @Override
+  public Resolution.GoalListener goalStarted(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> goal, int depth) {
+    if (depth == 0) {
+      Root started = new Root();
+      started.event.begin();
+      root = started;
+    }
+    Root current = root;
+    if (current != null) {
+      current.goals.incrementAndGet();
+      current.maxDepth.accumulateAndGet(depth + 1, Math::max);
+    }
+
+    WitnessEvents.GoalEvent goalEvent = goalEvents ? new WitnessEvents.GoalEvent() : null;
+    if (goalEvent != null) {
+      goalEvent.begin();
+    }
+
+    return (attempted, unifications, resolved) -> {
+      if (goalEvent != null) {
+        goalEvent.end();
+        if (goalEvent.shouldCommit()) {
+          goalEvent.goalType = goal.format();
+          goalEvent.depth = depth;
+          goalEvent.candidatesAttempted = attempted;
+          goalEvent.resolved = resolved;
+          goalEvent.commit();
+        }
+      }
+      if (depth == 0 && current != null) {
+        finished(current, goal, attempted, unifications, resolved);
+      }
+    };
+  }
+
+  private void finished(
+      Root root,
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target,
+      int attempted,
+      int unifications,
+      boolean resolved) {
+    long nanos = System.nanoTime() - root.start;
+
+    root.event.end();
+    if (root.event.shouldCommit()) {
+      root.event.targetType = target.format();
+      root.event.resolved = resolved;
+      root.event.goals = root.goals.get();
+      root.event.candidatesAttempted = attempted;
+      root.event.maxDepth = root.maxDepth.get();
+      root.event.commit();
+    }
+
+    if (listeners.length > 0) {
+      var resolution =
+          new ResolutionListener.Resolved(
+              target.format(),
+              resolved,
+              root.goals.get(),
+              attempted,
+              unifications,
+              root.maxDepth.get(),
+              nanos);
+      for (ResolutionListener listener : listeners) {
+        listener.resolved(resolution);
+      }
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.garciat.typeclasses.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link ResolutionListener} that keeps counters and latency histograms per target type, and
+ * publishes them as a platform MXBean named {@value #OBJECT_NAME}.
+ *
+ * <p>Histograms count durations in power-of-two microsecond buckets: bucket {@code 0} counts those
+ * under 1 µs, and bucket {@code i} those from 2<sup>i-1</sup> µs up to 2<sup>i</sup> µs. The last
+ * bucket also counts anything longer.
+ */
+public final class ResolutionStats
+    implements ResolutionListener, ResolutionStatsMXBean, AutoCloseable {
+  public static final String OBJECT_NAME = "com.garciat.typeclasses:type=ResolutionStats";
+
+  static final int BUCKETS = 24;
+
+  private final ConcurrentMap<String, Counters> targets = new ConcurrentHashMap<>();
+
+  private ResolutionStats() {}
+
+  /**
+   * Starts collecting statistics: registers new stats as a resolution listener and as a platform
+   * MXBean. Close them to stop.
+   *
+   * @throws IllegalStateException if stats are already registered with the platform MBean server
+   */
+  public static ResolutionStats register() {
+    ResolutionStats stats = new ResolutionStats();
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+    }
+    ResolutionListeners.add(stats);
+    return stats;
+  }
+
+  /** Stops collecting statistics, and unregisters the MXBean. */
+  @Override
+  public void close() {
+    ResolutionListeners.remove(this);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      server.unregisterMBean(new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      // Already unregistered
+    }
+  }
+
+  /**
+   * Statistics for one target type. Durations are in nanoseconds.
+   *
+   * @param maxDepth the deepest nesting of goals searched for the target, counting it as 1
+   */
+  public record Target(
+      String targetType,
+      long resolutions,
+      long failures,
+      long candidatesAttempted,
+      long unifications,
+      long maxDepth,
+      long resolutionNanos,
+      List<Long> resolutionHistogram,
+      long instantiations,
+      long instantiationNanos,
+      List<Long> instantiationHistogram) {}
+
+  @Override
+  public List<Target> getTargets() {
+    return targets.entrySet().stream()
+        .map(e -> e.getValue().snapshot(e.getKey()))
+        .sorted(Comparator.comparing(Target::targetType))
+        .toList();
+  }
+
+  @Override
+  public void reset() {
+    targets.clear();
+  }
+
+  @Override
+  public void resolved(Resolved resolution) {
+    Counters counters = counters(resolution.targetType());
+    counters.resolutions.increment();
+    if (!resolution.resolved()) {
+      counters.failures.increment();
+    }
+    counters.candidatesAttempted.add(resolution.candidatesAttempted());
+    counters.unifications.add(resolution.unifications());
+    counters.maxDepth.accumulate(resolution.maxDepth());
+    counters.resolutionNanos.add(resolution.nanos());
+    counters.resolutionHistogram.incrementAndGet(bucket(resolution.nanos()));
+  }
+
+  @Override
+  public void instantiated(Instantiated instantiation) {
+    Counters counters = counters(instantiation.targetType());
+    counters.instantiations.increment();
+    counters.instantiationNanos.add(instantiation.nanos());
+    counters.instantiationHistogram.incrementAndGet(bucket(instantiation.nanos()));
+  }
+
+  private Counters counters(String targetType) {
+    return targets.computeIfAbsent(targetType, _ -> new Counters());
+  }
+
+  static int bucket(long nanos) {
+    long micros = nanos / 1000;
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  private static final class Counters {
+    private final LongAdder resolutions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder candidatesAttempted = new LongAdder();
+    private final LongAdder unifications = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder resolutionNanos = new LongAdder();
+    private final AtomicLongArray resolutionHistogram = new AtomicLongArray(BUCKETS);
+    private final LongAdder instantiations = new LongAdder();
+    private final LongAdder instantiationNanos = new LongAdder();
+    private final AtomicLongArray instantiationHistogram = new AtomicLongArray(BUCKETS);
+
+    private Target snapshot(String targetType) {
+      return new Target(
+          targetType,
+          resolutions.sum(),
+          failures.sum(),
+          candidatesAttempted.sum(),
+          unifications.sum(),
+          maxDepth.get(),
+          resolutionNanos.sum(),
+          snapshot(resolutionHistogram),
+          instantiations.sum(),
+          instantiationNanos.sum(),
+          snapshot(instantiationHistogram));
+    }
+
+    private static List<Long> snapshot(AtomicLongArray histogram) {
+      return IntStream.range(0, histogram.length()).mapToObj(histogram::get).toList();
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.garciat.typeclasses.runtime;
+
+import java.util.List;
+
+/** Management interface of {@link ResolutionStats}. */
+public interface ResolutionStatsMXBean {
+  /** Statistics per target type, for the target types resolved or instantiated so far. */
+  List<ResolutionStats.Target> getTargets();
+
+  void reset();
+}
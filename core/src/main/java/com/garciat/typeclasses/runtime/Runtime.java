@@ -1,19 +1,114 @@
 package com.garciat.typeclasses.runtime;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 public final class Runtime {
   private Runtime() {}
 
-  public record Method(java.lang.reflect.Method java) {
+  /**
+   * A witness constructor method, together with a {@link MethodHandle} bound to it once.
+   *
+   * <p>Identified by its declaring class, name and erased type, so that it can be linked either by
+   * reflection or by {@link #findStatic}, without a {@link java.lang.reflect.Method}.
+   *
+   * <p>The handle is adapted to the generic type {@code (Object, ..., Object)Object} for arities up
+   * to {@link #MAX_EXACT_ARITY}, and to {@code (Object[])Object} beyond that, so that {@link
+   * #invoke(Object[])} can call it with {@code invokeExact}.
+   */
+  public record Method(Class<?> owner, String name, MethodType type, MethodHandle handle) {
+    private static final int MAX_EXACT_ARITY = 6;
+
+    public Method(java.lang.reflect.Method java) {
+      this(
+          java.getDeclaringClass(),
+          java.getName(),
+          MethodType.methodType(java.getReturnType(), java.getParameterTypes()),
+          adapt(java.getParameterCount(), unreflect(java)));
+    }
+
+    /**
+     * Links the public static method with the given name and erased type, as {@link
+     * MethodHandles.Lookup#findStatic} does.
+     *
+     * @throws NoSuchMethodException if there is no such method
+     */
+    public static Method findStatic(Class<?> owner, String name, MethodType type)
+        throws NoSuchMethodException {
+      MethodHandle handle;
+      try {
+        handle = MethodHandles.publicLookup().findStatic(owner, name, type);
+      } catch (IllegalAccessException e) {
+        handle = throwing(type, e);
+      }
+      return new Method(owner, name, type, adapt(type.parameterCount(), handle));
+    }
+
+    public Object invoke(Object[] args) throws Throwable {
+      return switch (args.length) {
+        case 0 -> (Object) handle.invokeExact();
+        case 1 -> (Object) handle.invokeExact(args[0]);
+        case 2 -> (Object) handle.invokeExact(args[0], args[1]);
+        case 3 -> (Object) handle.invokeExact(args[0], args[1], args[2]);
+        case 4 -> (Object) handle.invokeExact(args[0], args[1], args[2], args[3]);
+        case 5 -> (Object) handle.invokeExact(args[0], args[1], args[2], args[3], args[4]);
+        case 6 -> (Object) handle.invokeExact(args[0], args[1], args[2], args[3], args[4], args[5]);
+        default -> (Object) handle.invokeExact(args);
+      };
+    }
+
+    private static MethodHandle unreflect(java.lang.reflect.Method java) {
+      try {
+        return MethodHandles.publicLookup().unreflect(java);
+      } catch (IllegalAccessException e) {
+        return throwing(MethodType.methodType(java.getReturnType(), java.getParameterTypes()), e);
+      }
+    }
+
+    /** Defers an access failure to invocation time, like {@code Method.invoke()} would. */
+    private static MethodHandle throwing(MethodType type, IllegalAccessException e) {
+      return MethodHandles.dropArguments(
+          MethodHandles.throwException(type.returnType(), IllegalAccessException.class).bindTo(e),
+          0,
+          type.parameterList());
+    }
+
+    private static MethodHandle adapt(int arity, MethodHandle handle) {
+      return arity <= MAX_EXACT_ARITY
+          ? handle.asType(MethodType.genericMethodType(arity))
+          : handle
+              .asSpreader(Object[].class, arity)
+              .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Method other
+          && owner.equals(other.owner)
+          && name.equals(other.name)
+          && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return (owner.hashCode() * 31 + name.hashCode()) * 31 + type.hashCode();
+    }
+
     @Override
     public String toString() {
-      return java.getDeclaringClass().getSimpleName() + "." + java.getName();
+      return owner.getSimpleName() + "." + name;
     }
   }
 
-  public record Var(java.lang.reflect.TypeVariable<?> java) {
+  /**
+   * A type variable, by name within its declaration: the {@link Class} or witness constructor
+   * {@link Method} that declares it.
+   */
+  public record Var(Object declaration, String name) {
     @Override
     public String toString() {
-      return java.getName();
+      return name;
     }
   }
 
@@ -5,6 +5,7 @@ import com.garciat.typeclasses.api.TypeClass;
 import com.garciat.typeclasses.api.hkt.TApp;
 import com.garciat.typeclasses.api.hkt.TPar;
 import com.garciat.typeclasses.api.hkt.TagBase;
+import com.garciat.typeclasses.impl.OverlappingInstances;
 import com.garciat.typeclasses.impl.ParsedType;
 import com.garciat.typeclasses.impl.ParsedType.App;
 import com.garciat.typeclasses.impl.ParsedType.ArrayOf;
@@ -20,7 +21,6 @@ import com.garciat.typeclasses.impl.utils.Lists;
 import com.garciat.typeclasses.impl.utils.Maybe;
 import com.garciat.typeclasses.impl.utils.Pair;
 import java.lang.reflect.GenericArrayType;
-import java.lang.reflect.GenericDeclaration;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -29,6 +29,9 @@ import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
 
 public final class RuntimeWitnessSystem {
   private RuntimeWitnessSystem() {}
@@ -37,54 +40,245 @@ public final class RuntimeWitnessSystem {
           Resolution.Failure<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>,
           Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
       resolve(Type type) {
-    return Resolution.resolve(RuntimeWitnessSystem::findWitnesses, parse(type));
+    return resolve(parse(type));
   }
 
-  private static List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
-      findWitnesses(Runtime.Const target) {
-    return Arrays.stream(target.java().getDeclaredMethods())
+  public static Either<
+          Resolution.Failure<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>,
+          Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      resolve(ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target) {
+    return resolveAll(List.of(target), null).getFirst();
+  }
+
+  /**
+   * Like {@link #resolve(ParsedType)}, but with the given reflection mode rather than the one set
+   * with {@link #setReflectionMode}.
+   */
+  public static Either<
+          Resolution.Failure<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>,
+          Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      resolve(ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target, ReflectionMode mode) {
+    return resolveAll(List.of(target), null, mode).getFirst();
+  }
+
+  /** Like {@link #resolve(ParsedType)}, running independent parts of the search on the pool. */
+  public static Either<
+          Resolution.Failure<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>,
+          Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      resolve(
+          ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> target,
+          @Nullable ForkJoinPool pool) {
+    return resolveAll(List.of(target), pool).getFirst();
+  }
+
+  /** Resolves the witnesses for the given types within a single resolution. */
+  public static List<
+          Either<
+              Resolution.Failure<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>,
+              Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>>
+      resolveAll(
+          List<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>> targets,
+          @Nullable ForkJoinPool pool) {
+    return resolveAll(targets, pool, reflectionMode);
+  }
+
+  private static List<
+          Either<
+              Resolution.Failure<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>,
+              Resolution.Result<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>>
+      resolveAll(
+          List<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>> targets,
+          @Nullable ForkJoinPool pool,
+          ReflectionMode mode) {
+    return Resolution.resolveAll(
+        target -> witnessConstructors(target.java(), mode),
+        RuntimeWitnessSystem::sharedSpecificity,
+        targets,
+        pool,
+        ResolutionObserver.start());
+  }
+
+  /**
+   * What the witness indexes say about each class. Computed once per class and released together
+   * with it, regardless of the reflection mode, which is applied on each lookup.
+   */
+  private static final ClassValue<IndexedWitnesses.Lookup> LOOKUPS =
+      new ClassValue<>() {
+        @Override
+        protected IndexedWitnesses.Lookup computeValue(Class<?> type) {
+          return mayDeclareWitnesses(type)
+              ? IndexedWitnesses.find(type)
+              : new IndexedWitnesses.Lookup.Indexed(List.of());
+        }
+      };
+
+  /**
+   * Witness constructors found by reflection, per class. Computed once per class, for classes that
+   * the index leaves to reflection when the mode allows it, and released together with the class.
+   */
+  private static final ClassValue<
+          List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>>
+      REFLECTED =
+          new ClassValue<>() {
+            @Override
+            protected List<
+                    WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+                computeValue(Class<?> type) {
+              return reflectWitnessConstructors(type);
+            }
+          };
+
+  /**
+   * Which witness constructors overlap which, for the goals of each type class. Kept for as long as
+   * the type class, so that each pair of constructors is unified once across resolutions.
+   */
+  private static final ClassValue<
+          OverlappingInstances.Specificity<
+              Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      SPECIFICITIES =
+          new ClassValue<>() {
+            @Override
+            protected OverlappingInstances.Specificity<
+                    Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>
+                computeValue(Class<?> type) {
+              return new OverlappingInstances.Specificity<>();
+            }
+          };
+
+  /**
+   * The type class's shared overlap relation, if the given candidates can be kept in it. Only
+   * candidates declared by classes of the type class's loader or its ancestors are, as with call
+   * site memos, so that the type class does not keep classes of descendant loaders alive. Other
+   * candidates are compared within each resolution.
+   */
+  private static Maybe<
+          OverlappingInstances.Specificity<
+              Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      sharedSpecificity(
+          Runtime.Const typeClass,
+          List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+              ctors) {
+    ClassLoader loader = typeClass.java().getClassLoader();
+    for (var ctor : ctors) {
+      if (!WitnessCache.isAncestorOrSelf(ctor.method().owner().getClassLoader(), loader)) {
+        return Maybe.nothing();
+      }
+    }
+    return Maybe.just(SPECIFICITIES.get(typeClass.java()));
+  }
+
+  /**
+   * The witness constructors declared by the given class, from the witness index or, as the given
+   * mode allows, by reflection.
+   *
+   * @throws IllegalStateException if the mode is {@link ReflectionMode#FORBIDDEN} and the class
+   *     would have to be reflected over
+   */
+  public static List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      witnessConstructors(Class<?> type, ReflectionMode mode) {
+    return switch (LOOKUPS.get(type)) {
+      case IndexedWitnesses.Lookup.Indexed(var constructors) -> constructors;
+      case IndexedWitnesses.Lookup.Reflect() ->
+          switch (mode) {
+            case FALLBACK, CLOSED_WORLD -> REFLECTED.get(type);
+            case FORBIDDEN ->
+                throw new IllegalStateException(
+                    "Class is listed for reflection in a witness index and reflection is"
+                        + " forbidden: "
+                        + type.getName());
+          };
+      case IndexedWitnesses.Lookup.Unindexed() ->
+          switch (mode) {
+            case FALLBACK -> REFLECTED.get(type);
+            case CLOSED_WORLD -> List.of();
+            case FORBIDDEN ->
+                throw new IllegalStateException(
+                    "Class is not in a witness index and reflection is forbidden: "
+                        + type.getName());
+          };
+    };
+  }
+
+  private static volatile ReflectionMode reflectionMode = ReflectionMode.fromSystemProperty();
+
+  /**
+   * Sets what to do for classes missing from the witness index. Applies to resolutions started
+   * afterwards; witnesses that were already resolved and cached are kept.
+   */
+  public static void setReflectionMode(ReflectionMode mode) {
+    reflectionMode = mode;
+  }
+
+  /**
+   * The witness constructors declared by the given class, found by reflection regardless of any
+   * {@link IndexedWitnesses witness index}.
+   */
+  public static List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
+      reflectWitnessConstructors(Class<?> type) {
+    return Arrays.stream(type.getDeclaredMethods())
+        .filter(m -> m.isAnnotationPresent(TypeClass.Witness.class))
         .flatMap(m -> parseWitnessConstructor(m).stream())
         .toList();
   }
 
+  /**
+   * Classes defined by the bootstrap or platform class loaders (e.g. {@code Integer}, {@code
+   * String}, {@code Map}) cannot see {@link TypeClass.Witness}, so they never declare witnesses.
+   */
+  private static boolean mayDeclareWitnesses(Class<?> type) {
+    ClassLoader loader = type.getClassLoader();
+    return loader != null
+        && loader != ClassLoader.getPlatformClassLoader()
+        && !type.isPrimitive()
+        && !type.isArray();
+  }
+
   private static Maybe<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>
       parseWitnessConstructor(Method method) {
     if (Modifier.isPublic(method.getModifiers())
         && Modifier.isStatic(method.getModifiers())
         && method.getAnnotation(TypeClass.Witness.class) instanceof TypeClass.Witness witnessAnn) {
+      Runtime.Method ctor = new Runtime.Method(method);
+      // Type variables of a witness constructor are declared by it, as they are when indexed
+      Function<TypeVariable<?>, TyParam<Runtime.Var>> vars = v -> typeParam(ctor, v);
       return Maybe.just(
           new WitnessConstructor<>(
-              new Runtime.Method(method),
+              ctor,
               witnessAnn.overlap(),
-              typeParams(method),
-              Lists.map(method.getGenericParameterTypes(), RuntimeWitnessSystem::parse),
-              parse(method.getGenericReturnType())));
+              Lists.map(method.getTypeParameters(), vars),
+              Lists.map(method.getGenericParameterTypes(), t -> parse(t, vars)),
+              parse(method.getGenericReturnType(), vars)));
     } else {
       return Maybe.nothing();
     }
   }
 
   public static ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> parse(Type java) {
+    return parse(java, v -> typeParam(v.getGenericDeclaration(), v));
+  }
+
+  private static ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> parse(
+      Type java, Function<TypeVariable<?>, TyParam<Runtime.Var>> vars) {
     return switch (java) {
       case Class<?> tag when parseTagType(tag) instanceof Maybe.Just(var tagged) ->
           constType(tagged);
-      case Class<?> arr when arr.isArray() -> new ArrayOf<>(parse(arr.getComponentType()));
+      case Class<?> arr when arr.isArray() -> new ArrayOf<>(parse(arr.getComponentType(), vars));
       case Class<?> prim when prim.isPrimitive() -> new Primitive<>(new Runtime.Prim(prim));
       case Class<?> c -> constType(c);
       case ParameterizedType p when parseAppType(p) instanceof Maybe.Just(Pair(var fun, var arg)) ->
-          new App<>(parse(fun), parse(arg));
+          new App<>(parse(fun, vars), parse(arg, vars));
       case ParameterizedType p when parseLazyType(p) instanceof Maybe.Just(var under) ->
-          new ParsedType.Lazy<>(parse(under));
+          new ParsedType.Lazy<>(parse(under, vars));
       case ParameterizedType p -> {
         Const<Runtime.Var, Runtime.Const, Runtime.Prim> decl = constType((Class<?>) p.getRawType());
 
         List<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>> args =
-            Lists.map(p.getActualTypeArguments(), RuntimeWitnessSystem::parse);
+            Lists.map(p.getActualTypeArguments(), t -> parse(t, vars));
 
         yield Lists.zip(decl.typeParams(), args, TyParam::wrapOut).stream().reduce(decl, App::new);
       }
-      case TypeVariable<?> v -> new Var<>(typeParam(v));
-      case GenericArrayType a -> new ArrayOf<>(parse(a.getGenericComponentType()));
+      case TypeVariable<?> v -> new Var<>(vars.apply(v));
+      case GenericArrayType a -> new ArrayOf<>(parse(a.getGenericComponentType(), vars));
       case WildcardType _ -> new Wildcard<>();
       default -> throw new IllegalArgumentException("Unsupported type: " + java);
     };
@@ -94,12 +288,13 @@ public final class RuntimeWitnessSystem {
     return new Const<>(new Runtime.Const(tagged), typeParams(tagged));
   }
 
-  private static List<TyParam<Runtime.Var>> typeParams(GenericDeclaration cls) {
-    return Lists.map(cls.getTypeParameters(), RuntimeWitnessSystem::typeParam);
+  private static List<TyParam<Runtime.Var>> typeParams(Class<?> cls) {
+    return Lists.map(cls.getTypeParameters(), t -> typeParam(cls, t));
   }
 
-  private static TyParam<Runtime.Var> typeParam(TypeVariable<?> t) {
-    return new TyParam<>(new Runtime.Var(t), t.isAnnotationPresent(Out.class));
+  private static TyParam<Runtime.Var> typeParam(Object declaration, TypeVariable<?> t) {
+    return new TyParam<>(
+        new Runtime.Var(declaration, t.getName()), t.isAnnotationPresent(Out.class));
   }
 
   private static Maybe<Type> parseLazyType(ParameterizedType t) {
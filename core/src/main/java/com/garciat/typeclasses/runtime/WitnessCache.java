@@ -0,0 +1,490 @@
+package com.garciat.typeclasses.runtime;
+
+import com.garciat.typeclasses.impl.ParsedType;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Thread-safe cache of summoned witness instances, keyed by their parsed witness type.
+ *
+ * <p>The cache is partitioned by class loader, so that it does not keep class loaders alive: a
+ * witness type is cached in the partition of the class loader that defines its classes, i.e. the
+ * loader of its classes that is not an ancestor of the loaders of the others. Partitions are only
+ * strongly reachable from the classes of their loader, and are collected together with it.
+ *
+ * <p>Each partition also remembers a bounded number of types known to have no witness, evicting the
+ * least recently probed ones first.
+ */
+public final class WitnessCache {
+  private static final int MAX_UNRESOLVABLE = 1024;
+
+  private final ClassValue<Partition> partitionsByClass =
+      new ClassValue<>() {
+        @Override
+        protected Partition computeValue(Class<?> type) {
+          return partitionOf(type.getClassLoader());
+        }
+      };
+
+  private final Lock partitionsLock = new ReentrantLock();
+
+  private final Map<@Nullable ClassLoader, WeakReference<Partition>> partitions =
+      new WeakHashMap<>();
+
+  /** Classes of the bootstrap loader are never unloaded, so its partition is held strongly. */
+  private final Partition bootstrap = partitionOf(null);
+
+  private volatile EvictionPolicy evictionPolicy;
+
+  /** The pending entry each thread is waiting for, across all partitions. */
+  private final ConcurrentMap<Thread, Partition.Entry.Pending> waits = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public WitnessCache(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  /** Sets the policy applied by all partitions from their next insertion on. */
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  /** The partition that caches the given witness type. */
+  public Partition partition(ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type) {
+    Class<?> defining = definingClass(type, null);
+    return defining == null ? bootstrap : partitionsByClass.get(defining);
+  }
+
+  /**
+   * Drops the cached instances of the given class loader and of its descendants, e.g. because the
+   * loader is being discarded.
+   */
+  public void invalidate(ClassLoader loader) {
+    for (Partition partition : livePartitions()) {
+      if (partition.loader != null && isAncestorOrSelf(loader, partition.loader)) {
+        partition.clear();
+      }
+    }
+  }
+
+  public void clear() {
+    for (Partition partition : livePartitions()) {
+      partition.clear();
+    }
+  }
+
+  public Stats stats() {
+    int size = 0;
+    int unresolvable = 0;
+    List<Partition> live = livePartitions();
+    for (Partition partition : live) {
+      size += partition.size();
+      unresolvable += partition.unresolvableSize();
+    }
+    return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, unresolvable, live.size());
+  }
+
+  /**
+   * Cache statistics. Counters are cumulative over the cache's lifetime; sizes cover the partitions
+   * that are still alive.
+   */
+  public record Stats(
+      long hits, long misses, long evictions, int size, int unresolvable, int partitions) {}
+
+  /**
+   * Records that the current thread is about to wait for the given entry, unless waiting would
+   * close a cycle of threads waiting for each other's entries, in which case it returns false.
+   *
+   * <p>The wait is recorded before the cycle is looked for, so that of two threads that start
+   * waiting for each other at the same time, at least the later one sees the cycle.
+   */
+  private boolean startWaiting(Partition.Entry.Pending pending) {
+    Thread self = Thread.currentThread();
+    waits.put(self, pending);
+
+    Thread owner = pending.owner;
+    for (int steps = waits.size(); steps >= 0; steps--) {
+      if (owner == self) {
+        waits.remove(self);
+        return false;
+      }
+      Partition.Entry.Pending next = waits.get(owner);
+      if (next == null) {
+        break;
+      }
+      owner = next.owner;
+    }
+    return true;
+  }
+
+  private void stopWaiting() {
+    waits.remove(Thread.currentThread());
+  }
+
+  private Partition partitionOf(@Nullable ClassLoader loader) {
+    partitionsLock.lock();
+    try {
+      WeakReference<Partition> ref = partitions.get(loader);
+      Partition partition = ref == null ? null : ref.get();
+      if (partition == null) {
+        partition = new Partition(this, loader);
+        partitions.put(loader, new WeakReference<>(partition));
+      }
+      return partition;
+    } finally {
+      partitionsLock.unlock();
+    }
+  }
+
+  private List<Partition> livePartitions() {
+    partitionsLock.lock();
+    try {
+      List<Partition> live = new ArrayList<>(partitions.size());
+      for (WeakReference<Partition> ref : partitions.values()) {
+        if (ref.get() instanceof Partition partition) {
+          live.add(partition);
+        }
+      }
+      return live;
+    } finally {
+      partitionsLock.unlock();
+    }
+  }
+
+  /** The class of the given type whose loader is the deepest, or null for the bootstrap loader. */
+  private static @Nullable Class<?> definingClass(
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type, @Nullable Class<?> deepest) {
+    return switch (type) {
+      case ParsedType.Const(var repr, _) -> deeper(repr.java(), deepest);
+      case ParsedType.App(var fun, var arg) -> definingClass(arg, definingClass(fun, deepest));
+      case ParsedType.Out(var under) -> definingClass(under, deepest);
+      case ParsedType.ArrayOf(var elem) -> definingClass(elem, deepest);
+      case ParsedType.Lazy(var under) -> definingClass(under, deepest);
+      case ParsedType.Var(_), ParsedType.Primitive(_), ParsedType.Wildcard() -> deepest;
+    };
+  }
+
+  private static @Nullable Class<?> deeper(Class<?> candidate, @Nullable Class<?> deepest) {
+    if (candidate.getClassLoader() == null) {
+      return deepest;
+    } else if (deepest == null
+        || isAncestorOrSelf(deepest.getClassLoader(), candidate.getClassLoader())) {
+      return candidate;
+    } else {
+      // Also covers unrelated loaders, for which neither choice avoids holding the other
+      return deepest;
+    }
+  }
+
+  static boolean isAncestorOrSelf(@Nullable ClassLoader ancestor, @Nullable ClassLoader loader) {
+    for (ClassLoader l = loader; l != null; l = l.getParent()) {
+      if (l == ancestor) {
+        return true;
+      }
+    }
+    return ancestor == null;
+  }
+
+  /**
+   * The cached instances of the witness types defined by one class loader.
+   *
+   * <p>Reads are lock-free. Concurrent misses on the same type are coordinated so that one thread
+   * builds the instance while the others wait for it, without pinning virtual threads. Recency is
+   * tracked with a shared clock that only ticks when an entry is touched after another was, so
+   * repeated reads of one entry do not contend.
+   */
+  public static final class Partition {
+    private final WitnessCache cache;
+    private final @Nullable ClassLoader loader;
+
+    private final ConcurrentMap<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, Entry>
+        instances = new ConcurrentHashMap<>();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Lock evictionLock = new ReentrantLock();
+
+    private final Lock unresolvableLock = new ReentrantLock();
+
+    private final Map<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, Boolean> unresolvable =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, Boolean> eldest) {
+            return size() > MAX_UNRESOLVABLE;
+          }
+        };
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private Partition(WitnessCache cache, @Nullable ClassLoader loader) {
+      this.cache = cache;
+      this.loader = loader;
+    }
+
+    /**
+     * Returns the cached instance for the given type, or builds and caches it.
+     *
+     * <p>Only one thread builds the instance for a type at a time; concurrent callers wait for it
+     * and share its outcome, including a null instance or an exception. Null instances are never
+     * cached.
+     *
+     * @implNote The builder runs outside of any lock because witness constructors may themselves
+     *     summon witnesses. A caller that would wait for itself, either because it re-enters the
+     *     partition for the type it is building or because the builder it would wait for is waiting
+     *     on it, directly or through other threads, builds a second instance instead.
+     */
+    public @Nullable Object get(
+        ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type,
+        Function<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, @Nullable Object> builder) {
+      Entry entry = instances.get(type);
+      if (entry == null) {
+        Entry.Pending pending = new Entry.Pending(Thread.currentThread());
+        entry = instances.putIfAbsent(type, pending);
+        if (entry == null) {
+          return build(type, builder, pending);
+        }
+      }
+
+      switch (entry) {
+        case Entry.Ready ready -> {
+          cache.hits.increment();
+          WitnessEvents.cacheHit(type);
+          return touch(ready).instance;
+        }
+        case Entry.Pending pending -> {
+          if (!cache.startWaiting(pending)) {
+            return buildUnshared(type, builder);
+          }
+          try {
+            cache.hits.increment();
+            WitnessEvents.cacheHit(type);
+            return await(pending);
+          } finally {
+            cache.stopWaiting();
+          }
+        }
+      }
+    }
+
+    /** Returns the cached instance for the given type, if any. Only counts hits. */
+    public @Nullable Object getIfPresent(
+        ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type) {
+      if (instances.get(type) instanceof Entry.Ready ready) {
+        cache.hits.increment();
+        WitnessEvents.cacheHit(type);
+        return touch(ready).instance;
+      }
+      return null;
+    }
+
+    /**
+     * Caches an instance built elsewhere for the given type, e.g. by a batch, unless one is cached
+     * already. Counts neither a hit nor a miss.
+     *
+     * @return the cached instance, or the given one if another is still being built for the type
+     */
+    public Object putIfAbsent(
+        ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type, Object instance) {
+      Entry entry = instances.putIfAbsent(type, new Entry.Ready(instance, clock.incrementAndGet()));
+      if (entry == null) {
+        evict();
+        return instance;
+      }
+      return entry instanceof Entry.Ready ready ? touch(ready).instance : instance;
+    }
+
+    /** Whether the given type was recently found to have no witness. */
+    public boolean isKnownUnresolvable(ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type) {
+      unresolvableLock.lock();
+      try {
+        // get() rather than containsKey() so that the access refreshes the entry
+        return unresolvable.get(type) != null;
+      } finally {
+        unresolvableLock.unlock();
+      }
+    }
+
+    public void markUnresolvable(ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type) {
+      unresolvableLock.lock();
+      try {
+        unresolvable.put(type, true);
+      } finally {
+        unresolvableLock.unlock();
+      }
+    }
+
+    /**
+     * Incremented whenever the partition is cleared, to invalidate instances memoized elsewhere.
+     */
+    public int generation() {
+      return generation.get();
+    }
+
+    /**
+     * Whether classes of the given loader can hold on to this partition's instances without keeping
+     * a different class loader alive, i.e. whether this partition's loader is the given loader or
+     * one of its ancestors.
+     */
+    public boolean isReachableFrom(@Nullable ClassLoader loader) {
+      return isAncestorOrSelf(this.loader, loader);
+    }
+
+    private @Nullable Object build(
+        ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type,
+        Function<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, @Nullable Object> builder,
+        Entry.Pending pending) {
+      cache.misses.increment();
+      WitnessEvents.CacheMissEvent event = WitnessEvents.cacheMissStarted();
+
+      Object built;
+      try {
+        built = builder.apply(type);
+      } catch (Throwable e) {
+        instances.remove(type, pending);
+        pending.future.completeExceptionally(e);
+        WitnessEvents.cacheMissFinished(event, type, false);
+        throw e;
+      }
+      WitnessEvents.cacheMissFinished(event, type, built != null);
+
+      if (built == null) {
+        instances.remove(type, pending);
+      } else if (instances.replace(
+          type, pending, new Entry.Ready(built, clock.incrementAndGet()))) {
+        evict();
+      }
+      pending.future.complete(built);
+      return built;
+    }
+
+    /** Builds an instance for a caller that cannot wait for the pending one. Not cached. */
+    private @Nullable Object buildUnshared(
+        ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> type,
+        Function<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, @Nullable Object> builder) {
+      cache.misses.increment();
+      WitnessEvents.CacheMissEvent event = WitnessEvents.cacheMissStarted();
+      Object built = null;
+      try {
+        built = builder.apply(type);
+        return built;
+      } finally {
+        WitnessEvents.cacheMissFinished(event, type, built != null);
+      }
+    }
+
+    private static @Nullable Object await(Entry.Pending pending) {
+      try {
+        return pending.future.join();
+      } catch (CompletionException e) {
+        switch (e.getCause()) {
+          case RuntimeException cause -> throw cause;
+          case Error cause -> throw cause;
+          case null, default -> throw e;
+        }
+      }
+    }
+
+    private Entry.Ready touch(Entry.Ready ready) {
+      if (ready.lastAccess != clock.get()) {
+        ready.lastAccess = clock.incrementAndGet();
+      }
+      return ready;
+    }
+
+    /** Evicts ready entries, least recently used first, while the policy asks for it. */
+    private void evict() {
+      EvictionPolicy policy = cache.evictionPolicy;
+      if (!policy.shouldEvict(instances.size()) || !evictionLock.tryLock()) {
+        // Another thread is already evicting
+        return;
+      }
+      try {
+        while (policy.shouldEvict(instances.size())) {
+          Map.Entry<ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim>, Entry> eldest = null;
+          long eldestAccess = Long.MAX_VALUE;
+          for (var candidate : instances.entrySet()) {
+            if (candidate.getValue() instanceof Entry.Ready ready
+                && ready.lastAccess < eldestAccess) {
+              eldest = candidate;
+              eldestAccess = ready.lastAccess;
+            }
+          }
+          if (eldest == null) {
+            return;
+          }
+          if (instances.remove(eldest.getKey(), eldest.getValue())) {
+            cache.evictions.increment();
+          }
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+
+    private int size() {
+      return instances.size();
+    }
+
+    private int unresolvableSize() {
+      unresolvableLock.lock();
+      try {
+        return unresolvable.size();
+      } finally {
+        unresolvableLock.unlock();
+      }
+    }
+
+    private void clear() {
+      instances.clear();
+      unresolvableLock.lock();
+      try {
+        unresolvable.clear();
+      } finally {
+        unresolvableLock.unlock();
+      }
+      // Concurrent clears must each bump the generation, so the increment is atomic
+      generation.incrementAndGet();
+    }
+
+    /** A cached instance, or a marker for an instance being built by its owner thread. */
+    private sealed interface Entry {
+      final class Ready implements Entry {
+        private final Object instance;
+        private volatile long lastAccess;
+
+        private Ready(Object instance, long lastAccess) {
+          this.instance = instance;
+          this.lastAccess = lastAccess;
+        }
+      }
+
+      final class Pending implements Entry {
+        private final Thread owner;
+        private final CompletableFuture<@Nullable Object> future = new CompletableFuture<>();
+
+        private Pending(Thread owner) {
+          this.owner = owner;
+        }
+      }
+    }
+  }
+}
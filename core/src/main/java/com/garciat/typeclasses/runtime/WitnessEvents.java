@@ -0,0 +1,145 @@
+package com.garciat.typeclasses.runtime;
+
+import com.garciat.typeclasses.impl.ParsedType;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR events for runtime witness resolution, witness construction and the witness cache, so that a
+ * recording shows which witnesses are slow to summon next to GC and allocation data.
+ *
+ * <p>Event fields are only formatted while a recording has the event enabled. Goal and cache hit
+ * events are frequent, and disabled unless a recording enables them.
+ */
+public final class WitnessEvents {
+  private WitnessEvents() {}
+
+  private static final String CATEGORY = "Type Classes";
+
+  @Name("com.garciat.typeclasses.WitnessResolution")
+  @Label("Witness Resolution")
+  @Category(CATEGORY)
+  @Description("Resolution of a witness type at runtime")
+  static final class ResolutionEvent extends Event {
+    @Label("Target Type")
+    String targetType;
+
+    @Label("Resolved")
+    boolean resolved;
+
+    @Label("Goals")
+    @Description("Goals searched, excluding those answered from earlier in the resolution")
+    int goals;
+
+    @Label("Candidates Attempted")
+    int candidatesAttempted;
+
+    @Label("Max Depth")
+    int maxDepth;
+  }
+
+  @Name("com.garciat.typeclasses.ResolutionGoal")
+  @Label("Witness Resolution Goal")
+  @Category(CATEGORY)
+  @Description("Search for the witness of a single goal, including its subgoals")
+  @Enabled(false)
+  @Threshold("1 ms")
+  @StackTrace(false)
+  static final class GoalEvent extends Event {
+    @Label("Goal Type")
+    String goalType;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Candidates Attempted")
+    int candidatesAttempted;
+
+    @Label("Resolved")
+    boolean resolved;
+  }
+
+  @Name("com.garciat.typeclasses.WitnessConstruction")
+  @Label("Witness Construction")
+  @Category(CATEGORY)
+  @Description("Invocation of a witness constructor")
+  @StackTrace(false)
+  public static final class ConstructionEvent extends Event {
+    @Label("Constructor")
+    String constructor;
+
+    @Label("Witness Type")
+    String witnessType;
+  }
+
+  @Name("com.garciat.typeclasses.WitnessCacheHit")
+  @Label("Witness Cache Hit")
+  @Category(CATEGORY)
+  @Enabled(false)
+  @StackTrace(false)
+  static final class CacheHitEvent extends Event {
+    @Label("Witness Type")
+    String witnessType;
+  }
+
+  @Name("com.garciat.typeclasses.WitnessCacheMiss")
+  @Label("Witness Cache Miss")
+  @Category(CATEGORY)
+  @Description("Summoning of a witness missing from the cache")
+  static final class CacheMissEvent extends Event {
+    @Label("Witness Type")
+    String witnessType;
+
+    @Label("Built")
+    @Description("Whether a witness was found and cached")
+    boolean built;
+  }
+
+  public static ConstructionEvent constructionStarted() {
+    ConstructionEvent event = new ConstructionEvent();
+    event.begin();
+    return event;
+  }
+
+  public static void constructionFinished(
+      ConstructionEvent event, Runtime.Method constructor, ParsedType<?, ?, ?> witnessType) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.constructor = constructor.toString();
+      event.witnessType = witnessType.format();
+      event.commit();
+    }
+  }
+
+  static void cacheHit(ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> witnessType) {
+    CacheHitEvent event = new CacheHitEvent();
+    if (event.shouldCommit()) {
+      event.witnessType = witnessType.format();
+      event.commit();
+    }
+  }
+
+  static CacheMissEvent cacheMissStarted() {
+    CacheMissEvent event = new CacheMissEvent();
+    event.begin();
+    return event;
+  }
+
+  static void cacheMissFinished(
+      CacheMissEvent event,
+      ParsedType<Runtime.Var, Runtime.Const, Runtime.Prim> witnessType,
+      boolean built) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.witnessType = witnessType.format();
+      event.built = built;
+      event.commit();
+    }
+  }
+}
@@ -6,13 +6,55 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.garciat.typeclasses.api.Ty;
 import com.garciat.typeclasses.api.TypeClass;
+import com.garciat.typeclasses.impl.OverlappingInstances;
+import com.garciat.typeclasses.impl.Resolution;
+import com.garciat.typeclasses.impl.Steps;
+import com.garciat.typeclasses.impl.Unification;
+import com.garciat.typeclasses.impl.WitnessConstructor;
+import com.garciat.typeclasses.impl.utils.Either;
+import com.garciat.typeclasses.impl.utils.Lists;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import com.garciat.typeclasses.runtime.EvictionPolicy;
+import com.garciat.typeclasses.runtime.ReflectionMode;
+import com.garciat.typeclasses.runtime.ResolutionListener;
+import com.garciat.typeclasses.runtime.ResolutionListeners;
+import com.garciat.typeclasses.runtime.ResolutionStats;
+import com.garciat.typeclasses.runtime.Runtime;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import com.garciat.typeclasses.runtime.WitnessCache;
+import com.garciat.typeclasses.testclasses.OverlapShow;
+import com.garciat.typeclasses.testclasses.TestCycle;
 import com.garciat.typeclasses.testclasses.TestEq;
+import com.garciat.typeclasses.testclasses.TestFailing;
 import com.garciat.typeclasses.testclasses.TestGeneric;
+import com.garciat.typeclasses.testclasses.TestLazy;
+import com.garciat.typeclasses.testclasses.TestPruning;
 import com.garciat.typeclasses.testclasses.TestShow;
 import com.garciat.typeclasses.testclasses.TestTrivial;
+import com.garciat.typeclasses.testclasses.TestWide;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
 final class TypeClassesTest {
@@ -111,7 +153,7 @@ final class TypeClassesTest {
   void overlappingInstancesMoreSpecificWins() {
     // When we have both general and specific instances,
     // the more specific (overlapping) one should win
-    com.garciat.typeclasses.testclasses.OverlapShow<Integer> show = witness(new Ty<>() {});
+    OverlapShow<Integer> show = witness(new Ty<>() {});
     assertThat(show).isNotNull();
     // Should use the specific Integer instance
     assertThat(show.show(42)).isEqualTo("Integer: 42");
@@ -120,7 +162,7 @@ final class TypeClassesTest {
   @Test
   void overlappableInstanceCanBeOverridden() {
     // OVERLAPPABLE instances can be overridden by more specific ones
-    com.garciat.typeclasses.testclasses.OverlapShow<String> show = witness(new Ty<>() {});
+    OverlapShow<String> show = witness(new Ty<>() {});
     assertThat(show).isNotNull();
     assertThat(show.show("test")).isEqualTo("String: test");
   }
@@ -129,6 +171,78 @@ final class TypeClassesTest {
   // Ambiguity detection tests
   // ============================================
 
+  @Test
+  void overlappableInstanceIsUsedWhenSpecificInstanceFails() {
+    // The specific List instance needs TestShow<A>, which exists for Integer but not Double
+    OverlapShow<List<Integer>> ints = witness(new Ty<>() {});
+    OverlapShow<List<Double>> doubles = witness(new Ty<>() {});
+
+    assertThat(ints.show(List.of(1))).isEqualTo("List: [int:1]");
+    assertThat(doubles.show(List.of(1.0))).isEqualTo("Generic: [1.0]");
+  }
+
+  @Test
+  void cachedOverlapRelationMatchesUnification() {
+    var ctors =
+        Lists.concat(
+            RuntimeWitnessSystem.reflectWitnessConstructors(OverlapShow.class),
+            RuntimeWitnessSystem.reflectWitnessConstructors(TestPruning.class));
+    var specificity =
+        new OverlappingInstances.Specificity<
+            Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>();
+
+    // Twice, so that the second round is answered from the cache
+    for (int round = 0; round < 2; round++) {
+      for (var x : ctors) {
+        for (var y : ctors) {
+          boolean marked =
+              x.overlap() == TypeClass.Witness.Overlap.OVERLAPPABLE
+                  || y.overlap() == TypeClass.Witness.Overlap.OVERLAPPING;
+          boolean moreSpecific =
+              Unification.unify(x.returnType(), y.returnType()).fold(() -> false, m -> !m.isEmpty())
+                  && !Unification.unify(y.returnType(), x.returnType())
+                      .fold(() -> false, m -> !m.isEmpty());
+          assertThat(specificity.isOverlappedBy(x, y))
+              .as("%s overlapped by %s", x, y)
+              .isEqualTo(x != y && marked && moreSpecific);
+        }
+      }
+    }
+
+    var generic =
+        ctors.stream()
+            .filter(c -> c.method().name().equals("genericShow"))
+            .findFirst()
+            .orElseThrow();
+    assertThat(ctors.stream().filter(c -> specificity.isOverlappedBy(generic, c))).hasSize(3);
+  }
+
+  @Test
+  void overlappedInstanceDependenciesAreNotResolved() {
+    List<ResolutionListener.Resolved> resolved = new CopyOnWriteArrayList<>();
+    ResolutionListener listener =
+        new ResolutionListener() {
+          @Override
+          public void resolved(Resolved resolution) {
+            resolved.add(resolution);
+          }
+        };
+
+    ResolutionListeners.add(listener);
+    try {
+      TestPruning<Integer> pruned = witness(new Ty<>() {});
+
+      assertThat(pruned.describe()).isEqualTo("specific");
+      // Only the target: the general instance's TestShow dependencies are never searched
+      assertThat(resolved)
+          .singleElement()
+          .extracting(ResolutionListener.Resolved::goals)
+          .isEqualTo(1);
+    } finally {
+      ResolutionListeners.remove(listener);
+    }
+  }
+
   @Test
   void ambiguousWitnessesThrow() {
     // AmbiguousShow has two witness constructors without overlap markers
@@ -180,6 +294,15 @@ final class TypeClassesTest {
         .hasMessageContaining("NoWitnessType");
   }
 
+  @Test
+  void witnessResolutionExceptionExplainsNestedFailures() {
+    assertThatThrownBy(() -> witness(new Ty<TestShow<List<NoWitnessType>>>() {}))
+        .isInstanceOf(TypeClasses.WitnessResolutionException.class)
+        .hasMessageContaining("Could not resolve constraint")
+        .hasMessageContaining("No witnesses found for type")
+        .hasMessageContaining("NoWitnessType");
+  }
+
   @Test
   void witnessResolutionExceptionForAmbiguous() {
     assertThatThrownBy(
@@ -209,6 +332,18 @@ final class TypeClassesTest {
         .hasMessageContaining("Free variables");
   }
 
+  @Test
+  void witnessWithSharedSubgoals() {
+    // Sibling goals are identical at every level
+    TestEq<Map<Map<Map<Integer, Integer>, Map<Integer, Integer>>, Map<Integer, Integer>>> eq =
+        witness(new Ty<>() {});
+
+    var key = Map.of(Map.of(1, 2), Map.of(3, 4));
+
+    assertThat(eq.eq(Map.of(key, Map.of(5, 6)), Map.of(key, Map.of(5, 6)))).isTrue();
+    assertThat(eq.eq(Map.of(key, Map.of(5, 6)), Map.of(key, Map.of(5, 7)))).isFalse();
+  }
+
   @Test
   void witnessConflictingOutVars() {
     record Example() {
@@ -224,9 +359,632 @@ final class TypeClassesTest {
         .hasMessageContaining("out-var conflicting constraints");
   }
 
+  @Test
+  void witnessResolutionExceptionForThrowingConstructor() {
+    assertThatThrownBy(() -> TypeClasses.freshWitness(new Ty<TestFailing<String>>() {}))
+        .isInstanceOf(TypeClasses.WitnessResolutionException.class)
+        .hasMessageContaining("TestFailing.failing")
+        .hasRootCauseInstanceOf(IllegalStateException.class)
+        .hasRootCauseMessage("witness constructor failure");
+  }
+
+  // ============================================
+  // Witness constructor invocation tests
+  // ============================================
+
+  @Test
+  void witnessWithManyDependencies() {
+    TestWide<TestWide.Wide> wide = witness(new Ty<>() {});
+
+    assertThat(wide.describe())
+        .isEqualTo("string:a int:1 opt(string:b) empty [string:c] [int:2] [opt(string:d)]");
+  }
+
+  // ============================================
+  // Witness caching tests
+  // ============================================
+
+  @Test
+  void witnessIsCachedByType() {
+    TestShow<List<Integer>> first = witness(new Ty<>() {});
+    TestShow<List<Integer>> second = witness(new Ty<>() {});
+
+    assertThat(second).isSameAs(first);
+  }
+
+  @Test
+  void witnessCacheCountsHitsAndMisses() {
+    // A witness type used by no other test, so that it is not cached yet
+    var before = TypeClasses.cacheStats();
+    TestEq<Map<Integer, List<Integer>>> first = witness(new Ty<>() {});
+    var afterFirst = TypeClasses.cacheStats();
+    TestEq<Map<Integer, List<Integer>>> second = witness(new Ty<>() {});
+    var afterSecond = TypeClasses.cacheStats();
+
+    assertThat(second).isSameAs(first);
+    assertThat(afterFirst.misses() - before.misses()).isEqualTo(1);
+    assertThat(afterFirst.hits() - before.hits()).isZero();
+    assertThat(afterSecond.misses() - afterFirst.misses()).isZero();
+    assertThat(afterSecond.hits() - afterFirst.hits()).isEqualTo(1);
+  }
+
+  @Test
+  void freshWitnessBypassesCache() {
+    TestShow<Optional<Integer>> cached = witness(new Ty<>() {});
+    TestShow<Optional<Integer>> fresh = witness(new Ty<>() {});
+    TestShow<Optional<Integer>> fresher = TypeClasses.freshWitness(new Ty<>() {});
+
+    assertThat(fresh).isSameAs(cached);
+    assertThat(fresher).isNotSameAs(cached);
+    assertThat(fresher.show(Optional.of(1))).isEqualTo("opt(int:1)");
+  }
+
+  @Test
+  void invalidateDropsCachedWitnesses() {
+    List<TestShow<Optional<List<Integer>>>> shows = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      shows.add(witness(new Ty<>() {}));
+      TypeClasses.invalidate(getClass().getClassLoader());
+    }
+
+    assertThat(shows.get(1)).isNotSameAs(shows.get(0));
+  }
+
+  @Test
+  void witnessCacheEvictsLeastRecentlyUsed() {
+    var cache = new WitnessCache(EvictionPolicy.maxSize(2));
+    var a = RuntimeWitnessSystem.parse(new Ty<TestShow<String>>() {}.type());
+    var b = RuntimeWitnessSystem.parse(new Ty<TestShow<Integer>>() {}.type());
+    var c = RuntimeWitnessSystem.parse(new Ty<TestShow<Boolean>>() {}.type());
+    var partition = cache.partition(a);
+
+    partition.get(a, _ -> "a");
+    partition.get(b, _ -> "b");
+    partition.get(a, _ -> "a2");
+    partition.get(c, _ -> "c");
+
+    assertThat(partition.get(a, _ -> "a3")).isEqualTo("a");
+    assertThat(partition.get(b, _ -> "b2")).isEqualTo("b2");
+    assertThat(cache.stats().evictions()).isEqualTo(2);
+    assertThat(cache.stats().size()).isEqualTo(2);
+  }
+
+  @Test
+  void witnessCachePutIfAbsentKeepsCachedInstance() {
+    var cache = new WitnessCache(EvictionPolicy.maxSize(2));
+    var a = RuntimeWitnessSystem.parse(new Ty<TestShow<String>>() {}.type());
+    var partition = cache.partition(a);
+
+    assertThat(partition.putIfAbsent(a, "a")).isEqualTo("a");
+    assertThat(partition.putIfAbsent(a, "a2")).isEqualTo("a");
+    assertThat(cache.stats().hits()).isZero();
+    assertThat(cache.stats().misses()).isZero();
+    assertThat(partition.get(a, _ -> "a3")).isEqualTo("a");
+    assertThat(cache.stats().hits()).isEqualTo(1);
+  }
+
+  @Test
+  void tryWitnessReturnsResolvableWitness() {
+    Optional<TestShow<List<Integer>>> show = TypeClasses.tryWitness(new Ty<>() {});
+
+    assertThat(show).hasValueSatisfying(s -> assertThat(s.show(List.of(1))).isEqualTo("[int:1]"));
+  }
+
+  @Test
+  void tryWitnessReturnsEmptyForUnresolvableType() {
+    List<ResolutionListener.Resolved> resolved = new CopyOnWriteArrayList<>();
+    ResolutionListener listener =
+        new ResolutionListener() {
+          @Override
+          public void resolved(Resolved resolution) {
+            resolved.add(resolution);
+          }
+        };
+
+    List<Optional<TestShow<Optional<NoWitnessType>>>> probes = new ArrayList<>();
+    List<Integer> resolutions = new ArrayList<>();
+    ResolutionListeners.add(listener);
+    try {
+      for (int i = 0; i < 3; i++) {
+        probes.add(TypeClasses.tryWitness(new Ty<>() {}));
+        resolutions.add(resolved.size());
+      }
+    } finally {
+      ResolutionListeners.remove(listener);
+    }
+
+    assertThat(probes).allSatisfy(probe -> assertThat(probe).isEmpty());
+    // Only the first probe resolves; the others are answered by the call site memo
+    assertThat(resolutions).containsExactly(1, 1, 1);
+    assertThat(resolved.getFirst().resolved()).isFalse();
+  }
+
+  @Test
+  void witnessIsMemoizedPerCallSite() {
+    List<TestShow<List<String>>> shows = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      shows.add(witness(new Ty<>() {}));
+    }
+
+    assertThat(shows).allSatisfy(show -> assertThat(show).isSameAs(shows.getFirst()));
+  }
+
+  @Test
+  void witnessIsNotMemoizedForOverriddenTypes() {
+    Type stringType = new Ty<TestShow<String>>() {}.type();
+    Type integerType = new Ty<TestShow<Integer>>() {}.type();
+
+    TestShow<String> showString = witness(new DynamicTy<>(stringType));
+    TestShow<Integer> showInteger = witness(new DynamicTy<>(integerType));
+
+    assertThat(showString.show("a")).isEqualTo("string:a");
+    assertThat(showInteger.show(1)).isEqualTo("int:1");
+  }
+
+  // ============================================
+  // Witness plan tests
+  // ============================================
+
+  @Test
+  void planInstantiatesFreshWitnesses() {
+    WitnessPlan<TestShow<List<Optional<String>>>> plan = TypeClasses.plan(new Ty<>() {});
+
+    TestShow<List<Optional<String>>> first = plan.instantiate();
+    TestShow<List<Optional<String>>> second = plan.instantiate();
+
+    assertThat(plan.size()).isEqualTo(3);
+    assertThat(second).isNotSameAs(first);
+    assertThat(first.show(List.of(Optional.of("a")))).isEqualTo("[opt(string:a)]");
+    assertThat(second.show(List.of(Optional.empty()))).isEqualTo("[empty]");
+  }
+
+  @Test
+  void planFailsForUnresolvableTypes() {
+    assertThatThrownBy(() -> TypeClasses.plan(new Ty<TestShow<NoWitnessType>>() {}))
+        .isInstanceOf(TypeClasses.WitnessResolutionException.class)
+        .hasMessageContaining("NoWitnessType");
+  }
+
+  // ============================================
+  // Witness factory tests
+  // ============================================
+
+  @Test
+  void factoryBuildsFreshWitnesses() {
+    Supplier<TestShow<List<Optional<String>>>> factory = TypeClasses.factory(new Ty<>() {});
+
+    TestShow<List<Optional<String>>> first = factory.get();
+    TestShow<List<Optional<String>>> second = factory.get();
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(first.show(List.of(Optional.of("a"), Optional.empty())))
+        .isEqualTo("[opt(string:a),empty]");
+    assertThat(
+            WitnessFactories.generate(
+                TypeClasses.plan(new Ty<TestShow<List<Optional<String>>>>() {})))
+        .isInstanceOfSatisfying(
+            Maybe.Just.class, generated -> assertGeneratedFactory(generated.value()));
+  }
+
+  @Test
+  void factoryIsMemoizedPerCallSite() {
+    List<Supplier<TestShow<Optional<List<String>>>>> factories = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      factories.add(TypeClasses.factory(new Ty<>() {}));
+    }
+
+    assertThat(factories.get(1)).isSameAs(factories.get(0));
+    assertThat(factories.get(1).get()).isNotSameAs(factories.get(0).get());
+  }
+
+  @Test
+  void factoryTiesRecursiveLazyKnots() {
+    var ty = new Ty<TestLazy<TestLazy.Chain>>() {};
+    Supplier<TestLazy<TestLazy.Chain>> factory = TypeClasses.factory(ty);
+    var chain = new TestLazy.Chain(Optional.of(new TestLazy.Chain(Optional.empty())));
+
+    assertThat(factory.get().show(chain)).isEqualTo("link>end");
+    assertThat(factory.get()).isNotSameAs(factory.get());
+    assertThat(TypeClasses.plan(ty).steps()).hasAtLeastOneElementOfType(Steps.Step.Knot.class);
+    assertThat(WitnessFactories.generate(TypeClasses.plan(ty)))
+        .isInstanceOfSatisfying(
+            Maybe.Just.class,
+            generated -> {
+              assertGeneratedFactory(generated.value());
+              @SuppressWarnings("unchecked")
+              var show = ((Supplier<TestLazy<TestLazy.Chain>>) generated.value()).get();
+              assertThat(show.show(chain)).isEqualTo("link>end");
+            });
+  }
+
+  /** The supplier is an instance of a class generated by {@link WitnessFactories}. */
+  private static void assertGeneratedFactory(Object supplier) {
+    assertThat(supplier.getClass().isHidden()).isTrue();
+    assertThat(supplier.getClass().getName()).startsWith("com.garciat.typeclasses.WitnessFactory/");
+  }
+
+  @Test
+  void factoryWrapsConstructorExceptions() {
+    Supplier<TestFailing<String>> factory = TypeClasses.factory(new Ty<>() {});
+
+    assertThatThrownBy(factory::get)
+        .isInstanceOf(TypeClasses.WitnessResolutionException.class)
+        .hasRootCauseMessage("witness constructor failure");
+  }
+
+  // ============================================
+  // Batch summoning tests
+  // ============================================
+
+  @Test
+  void witnessAllSharesCommonSubWitnesses() {
+    var nested = new Ty<TestShow<List<List<Optional<String>>>>>() {};
+    var optional = new Ty<TestShow<Optional<List<Optional<String>>>>>() {};
+
+    var before = TypeClasses.cacheStats();
+    WitnessBatch batch = TypeClasses.witnessAll(List.of(nested, optional));
+
+    // Publishing the batch to the cache is not a cache miss
+    assertThat(TypeClasses.cacheStats().misses()).isEqualTo(before.misses());
+    // The TestShow of List<Optional<String>> and its dependencies are constructed once for both
+    assertThat(batch.constructed()).isEqualTo(5);
+    assertThat(batch.cached()).isZero();
+    assertThat(batch.get(nested).show(List.of(List.of(Optional.of("a")))))
+        .isEqualTo("[[opt(string:a)]]");
+    assertThat(batch.get(optional).show(Optional.of(List.of(Optional.empty()))))
+        .isEqualTo("opt([empty])");
+    assertThat(TypeClasses.witness(nested)).isSameAs(batch.get(nested));
+  }
+
+  @Test
+  void witnessAllReportsEachInstantiation() {
+    // Witness types used by no other test, so that they are not cached yet
+    var list = new Ty<TestShow<List<List<Optional<Integer>>>>>() {};
+    var map = new Ty<TestEq<List<Map<String, Integer>>>>() {};
+
+    try (var stats = ResolutionStats.register()) {
+      TypeClasses.witnessAll(List.of(list, map));
+
+      assertThat(stats.getTargets())
+          .extracting(ResolutionStats.Target::targetType)
+          .containsExactlyInAnyOrder(
+              "TestShow[A](List[E](List[E](Optional[T](Integer))))",
+              "TestEq[A](List[E](Map[K, V](String)(Integer)))");
+      assertThat(stats.getTargets())
+          .allSatisfy(
+              t -> {
+                assertThat(t.resolutions()).isEqualTo(1);
+                assertThat(t.instantiations()).isEqualTo(1);
+                assertThat(t.instantiationHistogram().stream().mapToLong(n -> n).sum())
+                    .isEqualTo(1);
+              });
+    }
+  }
+
+  @Test
+  void witnessAllFailsForUnresolvableTypes() {
+    assertThatThrownBy(
+            () ->
+                TypeClasses.witnessAll(
+                    List.of(new Ty<TestShow<String>>() {}, new Ty<TestShow<NoWitnessType>>() {})))
+        .isInstanceOf(TypeClasses.WitnessResolutionException.class)
+        .hasMessageContaining("NoWitnessType");
+  }
+
+  // ============================================
+  // Concurrency tests
+  // ============================================
+
+  @Test
+  void concurrentColdWitnessIsBuiltOnce() throws Exception {
+    int threads = 2_000;
+    var before = TypeClasses.cacheStats();
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<TestShow<Optional<Optional<Integer>>>>> shows = new ArrayList<>();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < threads; i++) {
+        shows.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  TestShow<Optional<Optional<Integer>>> show = witness(new Ty<>() {});
+                  return show;
+                }));
+      }
+      start.countDown();
+    }
+
+    var after = TypeClasses.cacheStats();
+    var first = shows.getFirst().get();
+
+    assertThat(after.misses() - before.misses()).isEqualTo(1);
+    for (var show : shows) {
+      assertThat(show.get()).isSameAs(first);
+    }
+  }
+
+  @Test
+  void mutuallyDependentColdWitnessesDoNotDeadlock() throws Exception {
+    var executor = Executors.newFixedThreadPool(2, Thread.ofPlatform().daemon().factory());
+    try {
+      Future<TestCycle.A<String>> a =
+          executor.submit(() -> witness(new Ty<TestCycle.A<String>>() {}));
+      Future<TestCycle.B<String>> b =
+          executor.submit(() -> witness(new Ty<TestCycle.B<String>>() {}));
+
+      assertThat(a.get(10, TimeUnit.SECONDS)).isNotNull();
+      assertThat(b.get(10, TimeUnit.SECONDS)).isNotNull();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void warmUpPopulatesTheWitnessCache() throws Exception {
+    var optional = new Ty<TestShow<Optional<Optional<String>>>>() {};
+    var list = new Ty<TestEq<List<List<String>>>>() {};
+
+    Map<Type, Duration> timings;
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      timings = TypeClasses.warmUp(List.of(optional, list), executor).get();
+    }
+
+    var before = TypeClasses.cacheStats();
+    TestShow<Optional<Optional<String>>> show = witness(new Ty<>() {});
+    var after = TypeClasses.cacheStats();
+
+    assertThat(timings).containsOnlyKeys(optional.type(), list.type());
+    assertThat(after.hits() - before.hits()).isEqualTo(1);
+    assertThat(after.misses()).isEqualTo(before.misses());
+    assertThat(show.show(Optional.of(Optional.empty()))).isEqualTo("opt(empty)");
+  }
+
+  @Test
+  void warmUpFailsForUnresolvableTypes() {
+    var future = TypeClasses.warmUp(List.of(new Ty<TestShow<NoWitnessType>>() {}), Runnable::run);
+
+    assertThatThrownBy(future::join)
+        .hasCauseInstanceOf(TypeClasses.WitnessResolutionException.class);
+  }
+
+  // ============================================
+  // Parallel resolution tests
+  // ============================================
+
+  @Test
+  void parallelResolutionMatchesSequential() {
+    List<Type> types =
+        List.of(
+            new Ty<TestWide<TestWide.Wide>>() {}.type(),
+            new Ty<TestEq<Map<String, Integer>>>() {}.type(),
+            new Ty<OverlapShow<List<Integer>>>() {}.type(),
+            new Ty<TestShow<List<Optional<String>>>>() {}.type());
+
+    try (var pool = new ForkJoinPool(4)) {
+      for (Type type : types) {
+        var target = RuntimeWitnessSystem.parse(type);
+        assertThat(RuntimeWitnessSystem.resolve(target, pool))
+            .isEqualTo(RuntimeWitnessSystem.resolve(target));
+      }
+    }
+  }
+
+  @Test
+  void parallelResolutionReportsSameFailures() {
+    List<Type> types =
+        List.of(
+            new Ty<TestShow<List<NoWitnessType>>>() {}.type(),
+            new Ty<TestEq<Map<String, NoWitnessType>>>() {}.type(),
+            new Ty<TestEq<Map<NoWitnessType, List<NoWitnessType>>>>() {}.type());
+
+    try (var pool = new ForkJoinPool(4)) {
+      for (Type type : types) {
+        var target = RuntimeWitnessSystem.parse(type);
+
+        var parallel = diagnosed(RuntimeWitnessSystem.resolve(target, pool));
+        var sequential = diagnosed(RuntimeWitnessSystem.resolve(target));
+
+        assertThat(parallel).isEqualTo(sequential);
+        assertThat(parallel.format()).isEqualTo(sequential.format());
+      }
+    }
+  }
+
+  @Test
+  void parallelResolutionIgnoresSpeculativeFailures() {
+    Function<
+            Runtime.Const,
+            List<WitnessConstructor<Runtime.Method, Runtime.Var, Runtime.Const, Runtime.Prim>>>
+        constructors =
+            c -> {
+              if (c.java().equals(UnreachableType.class)) {
+                throw new IllegalStateException("Looked up " + c);
+              }
+              return RuntimeWitnessSystem.witnessConstructors(c.java(), ReflectionMode.FALLBACK);
+            };
+    // The overlapping mapShow fails on its first dependency, so a sequential resolution falls back
+    // to the overlapped genericShow without looking up the second one
+    var target =
+        RuntimeWitnessSystem.parse(
+            new Ty<SpeculativeShow<Map<NoWitnessType, UnreachableType>>>() {}.type());
+
+    var sequential = Resolution.resolveAll(constructors, List.of(target), null);
+
+    try (var pool = new ForkJoinPool(4)) {
+      assertThat(Resolution.resolveAll(constructors, List.of(target), pool)).isEqualTo(sequential);
+    }
+    assertThat(sequential.getFirst())
+        .isInstanceOfSatisfying(
+            Either.Right.class,
+            right ->
+                assertThat(right.value())
+                    .asString()
+                    .contains(SpeculativeShow.class.getSimpleName() + ".genericShow"));
+  }
+
+  /** The failure found by repeating a failed resolution with diagnostics on. */
+  private static Resolution.Failure<?, ?, ?, ?> diagnosed(
+      Either<? extends Resolution.Failure<?, ?, ?, ?>, ?> outcome) {
+    return switch (outcome) {
+      case Either.Left(Resolution.Failure.Deferred(_, var details)) -> details.get();
+      default -> throw new AssertionError("Expected a deferred failure: " + outcome);
+    };
+  }
+
+  @Test
+  void forbiddenReflectionFailsForUnindexedClasses() {
+    var target = RuntimeWitnessSystem.parse(new Ty<UnindexedShow<String>>() {}.type());
+
+    assertThatThrownBy(() -> RuntimeWitnessSystem.resolve(target, ReflectionMode.FORBIDDEN))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining(UnindexedShow.class.getName());
+    // The mode applies to that resolution only, and nothing was cached under it
+    assertThat(RuntimeWitnessSystem.resolve(target, ReflectionMode.FALLBACK))
+        .isInstanceOf(Either.Right.class);
+  }
+
+  @Test
+  void recordsJfrEvents() throws Exception {
+    Path file = Files.createTempFile("witness", ".jfr");
+    try {
+      try (var recording = new Recording()) {
+        recording.enable("com.garciat.typeclasses.WitnessResolution");
+        recording.enable("com.garciat.typeclasses.ResolutionGoal").withThreshold(Duration.ZERO);
+        recording.enable("com.garciat.typeclasses.WitnessConstruction");
+        recording.enable("com.garciat.typeclasses.WitnessCacheMiss");
+        recording.start();
+
+        witness(new Ty<TestShow<List<Optional<List<Integer>>>>>() {});
+
+        recording.stop();
+        recording.dump(file);
+      }
+
+      Map<String, List<RecordedEvent>> events =
+          RecordingFile.readAllEvents(file).stream()
+              .collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+
+      String target = "TestShow[A](List[E](Optional[T](List[E](Integer))))";
+
+      assertThat(events.get("com.garciat.typeclasses.WitnessResolution"))
+          .singleElement()
+          .satisfies(
+              e -> {
+                assertThat(e.getString("targetType")).isEqualTo(target);
+                assertThat(e.getBoolean("resolved")).isTrue();
+                assertThat(e.getInt("goals")).isEqualTo(4);
+                assertThat(e.getInt("maxDepth")).isEqualTo(4);
+                assertThat(e.getInt("candidatesAttempted")).isGreaterThanOrEqualTo(4);
+              });
+      assertThat(events.get("com.garciat.typeclasses.ResolutionGoal"))
+          .extracting(e -> e.getString("goalType"))
+          .contains(target, "TestShow[A](Integer)");
+      assertThat(events.get("com.garciat.typeclasses.WitnessConstruction"))
+          .extracting(e -> e.getString("constructor"))
+          .containsExactly(
+              "TestShow.integerShow",
+              "TestShow.listShow",
+              "TestShow.optionalShow",
+              "TestShow.listShow");
+      assertThat(events.get("com.garciat.typeclasses.WitnessCacheMiss"))
+          .extracting(e -> e.getString("witnessType"))
+          .containsExactly(target);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  void resolutionStatsArePublishedPerTargetType() throws Exception {
+    List<ResolutionListener.Resolved> resolved = new CopyOnWriteArrayList<>();
+    ResolutionListener listener =
+        new ResolutionListener() {
+          @Override
+          public void resolved(Resolved resolution) {
+            resolved.add(resolution);
+          }
+        };
+
+    ResolutionListeners.add(listener);
+    try (var stats = ResolutionStats.register()) {
+      witness(new Ty<TestShow<Optional<List<Optional<Integer>>>>>() {});
+
+      String target = "TestShow[A](Optional[T](List[E](Optional[T](Integer))))";
+
+      assertThat(resolved)
+          .singleElement()
+          .satisfies(
+              r -> {
+                assertThat(r.targetType()).isEqualTo(target);
+                assertThat(r.resolved()).isTrue();
+                assertThat(r.goals()).isEqualTo(4);
+                assertThat(r.maxDepth()).isEqualTo(4);
+                assertThat(r.candidatesAttempted()).isGreaterThanOrEqualTo(4);
+                assertThat(r.unifications()).isGreaterThanOrEqualTo(r.candidatesAttempted());
+              });
+
+      assertThat(stats.getTargets())
+          .singleElement()
+          .satisfies(
+              t -> {
+                assertThat(t.targetType()).isEqualTo(target);
+                assertThat(t.resolutions()).isEqualTo(1);
+                assertThat(t.failures()).isZero();
+                assertThat(t.maxDepth()).isEqualTo(4);
+                assertThat(t.resolutionHistogram().stream().mapToLong(n -> n).sum()).isEqualTo(1);
+                assertThat(t.instantiations()).isEqualTo(1);
+                assertThat(t.instantiationHistogram().stream().mapToLong(n -> n).sum())
+                    .isEqualTo(1);
+              });
+
+      var published =
+          (CompositeData[])
+              ManagementFactory.getPlatformMBeanServer()
+                  .getAttribute(new ObjectName(ResolutionStats.OBJECT_NAME), "Targets");
+
+      assertThat(published).hasSize(1);
+      assertThat(published[0].get("targetType")).isEqualTo(target);
+      assertThat(published[0].get("resolutions")).isEqualTo(1L);
+    } finally {
+      ResolutionListeners.remove(listener);
+    }
+  }
+
   // ============================================
   // Test helper classes
   // ============================================
 
   record NoWitnessType() {}
+
+  /** Test classes are compiled without the annotation processor, so this one is not indexed. */
+  @TypeClass
+  interface UnindexedShow<T> {
+    @TypeClass.Witness
+    static UnindexedShow<String> stringShow() {
+      return new UnindexedShow<>() {};
+    }
+  }
+
+  record UnreachableType() {}
+
+  @TypeClass
+  interface SpeculativeShow<A> {
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPABLE)
+    static <A> SpeculativeShow<A> genericShow() {
+      return new SpeculativeShow<>() {};
+    }
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+    static SpeculativeShow<String> stringShow() {
+      return new SpeculativeShow<>() {};
+    }
+
+    @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+    static <K, V> SpeculativeShow<Map<K, V>> mapShow(TestShow<K> showK, TestShow<V> showV) {
+      return new SpeculativeShow<>() {};
+    }
+  }
+
+  record DynamicTy<T>(Type type) implements Ty<T> {}
 }
@@ -2,16 +2,36 @@ package com.garciat.typeclasses.processor;
 
 import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.garciat.typeclasses.api.GeneratedWitnesses;
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.examples.Example1;
+import com.garciat.typeclasses.examples.Example2;
+import com.garciat.typeclasses.impl.WitnessIndex;
+import com.garciat.typeclasses.impl.utils.Either;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import com.garciat.typeclasses.runtime.GeneratedFactories;
+import com.garciat.typeclasses.runtime.IndexedWitnesses;
+import com.garciat.typeclasses.runtime.ReflectionMode;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -30,12 +50,196 @@ public class WitnessResolutionCheckerTest {
         "Example6.java",
       })
   public void checkExample(String fileName) throws IOException {
+    // Given
+    var diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+    // When
+    boolean success = compileExample(fileName, diagnostics);
+
+    // Then
+    assertThat(diagnostics.getDiagnostics()).isEmpty();
+    assertThat(success).isTrue();
+  }
+
+  @Test
+  public void generatesWitnessFactories() throws Exception {
     requireNonNull(tempDir);
 
     // Given
-    var compiler = ToolProvider.getSystemJavaCompiler();
+    compileExample("Example1.java", new DiagnosticCollector<>());
 
-    var diagnostics = new DiagnosticCollector<JavaFileObject>();
+    try (var loader =
+        new URLClassLoader(new URL[] {tempDir.toUri().toURL()}, getClass().getClassLoader())) {
+      // When
+      var generated =
+          (GeneratedWitnesses)
+              loader
+                  .loadClass("com.garciat.typeclasses.examples.Example1_Witnesses")
+                  .getConstructor()
+                  .newInstance();
+
+      // Then
+      var key =
+          GeneratedFactories.key(
+                  RuntimeWitnessSystem.parse(
+                      new Ty<Example1.Show<Example1.Pair<Integer, List<Integer>>>>() {}.type()))
+              .fold(() -> "", k -> k);
+
+      assertThat(generated.factories()).containsOnlyKeys(key);
+
+      @SuppressWarnings("unchecked")
+      var show =
+          (Example1.Show<Example1.Pair<Integer, List<Integer>>>)
+              generated.factories().get(key).get();
+
+      assertThat(show.show(new Example1.Pair<>(1, List.of(2, 3)))).isEqualTo("(1, [2, 3])");
+    }
+  }
+
+  @Test
+  public void writesWitnessIndex() throws Exception {
+    requireNonNull(tempDir);
+
+    // Given
+    compileExample("Example1.java", new DiagnosticCollector<>());
+
+    // When
+    Map<String, Maybe<List<WitnessIndex.Entry>>> index;
+    try (var reader =
+        Files.newBufferedReader(
+            tempDir.resolve(WitnessIndex.resourceName(Example1.class.getName())))) {
+      index = WitnessIndex.read(reader);
+    }
+
+    // Then
+    assertThat(index).containsKeys(Example1.class.getName(), Example1.Pair.class.getName());
+    assertThat(index.get(Example1.class.getName())).isEqualTo(Maybe.just(List.of()));
+
+    var entries = index.get(Example1.Show.class.getName()).stream().flatMap(List::stream).toList();
+    var indexed =
+        IndexedWitnesses.constructors(Example1.Show.class, entries).stream()
+            .flatMap(List::stream)
+            .toList();
+
+    assertThat(entries).hasSize(2);
+    assertThat(indexed)
+        .containsExactlyInAnyOrderElementsOf(
+            RuntimeWitnessSystem.reflectWitnessConstructors(Example1.Show.class));
+  }
+
+  @Test
+  public void indexedWitnessesResolveWithoutReflection() throws Exception {
+    requireNonNull(tempDir);
+
+    // Given
+    compileExample("Example1.java", new DiagnosticCollector<>());
+
+    // When
+    Object result = resolveShowPairInIsolation("FORBIDDEN");
+
+    // Then
+    assertThat(result.getClass().getName()).isEqualTo(Either.Right.class.getName());
+  }
+
+  @Test
+  public void indexesSurviveCompilingOtherClasses() throws Exception {
+    requireNonNull(tempDir);
+
+    // Given
+    compileExample("Example1.java", new DiagnosticCollector<>());
+
+    // When
+    compileExample("Example2.java", new DiagnosticCollector<>());
+
+    // Then
+    assertThat(tempDir.resolve(WitnessIndex.resourceName(Example1.class.getName()))).exists();
+    assertThat(tempDir.resolve(WitnessIndex.resourceName(Example2.class.getName()))).exists();
+    Object result = resolveShowPairInIsolation("FORBIDDEN");
+    assertThat(result.getClass().getName()).isEqualTo(Either.Right.class.getName());
+  }
+
+  @Test
+  public void classesListedForReflectionAreReflectedOverInClosedWorld() throws Exception {
+    requireNonNull(tempDir);
+
+    // Given
+    compileExample("Example1.java", new DiagnosticCollector<>());
+
+    Path indexFile = tempDir.resolve(WitnessIndex.resourceName(Example1.class.getName()));
+    String show = Example1.Show.class.getName();
+    List<String> lines = new ArrayList<>();
+    for (String line : Files.readAllLines(indexFile)) {
+      if (!line.startsWith(show + "\t")) {
+        lines.add(line);
+      }
+    }
+    lines.add(WitnessIndex.reflectLine(show));
+    Files.write(indexFile, lines);
+
+    // When
+    Object closedWorld = resolveShowPairInIsolation("CLOSED_WORLD");
+
+    // Then
+    assertThat(closedWorld.getClass().getName()).isEqualTo(Either.Right.class.getName());
+    assertThatThrownBy(() -> resolveShowPairInIsolation("FORBIDDEN"))
+        .hasRootCauseInstanceOf(IllegalStateException.class)
+        .hasRootCauseMessage(
+            "Class is listed for reflection in a witness index and reflection is forbidden: "
+                + show);
+  }
+
+  /**
+   * Resolves {@code Show<Pair<Integer, List<Integer>>>} of the compiled {@code Example1} with a
+   * separate copy of the library, so that only the compiled example and its index are visible.
+   */
+  private Object resolveShowPairInIsolation(String reflectionMode) throws Exception {
+    requireNonNull(tempDir);
+
+    URL core = RuntimeWitnessSystem.class.getProtectionDomain().getCodeSource().getLocation();
+
+    try (var loader =
+        new URLClassLoader(
+            new URL[] {tempDir.toUri().toURL(), core}, ClassLoader.getPlatformClassLoader())) {
+      Class<?> system = loader.loadClass(RuntimeWitnessSystem.class.getName());
+      Class<?> mode = loader.loadClass(ReflectionMode.class.getName());
+      system
+          .getMethod("setReflectionMode", mode)
+          .invoke(null, mode.getField(reflectionMode).get(null));
+
+      Type target =
+          new Parameterized(
+              loader.loadClass(Example1.Show.class.getName()),
+              new Parameterized(
+                  loader.loadClass(Example1.Pair.class.getName()),
+                  Integer.class,
+                  new Parameterized(List.class, Integer.class)));
+
+      return system.getMethod("resolve", Type.class).invoke(null, target);
+    }
+  }
+
+  private record Parameterized(Class<?> raw, Type... args) implements ParameterizedType {
+    @Override
+    public Type[] getActualTypeArguments() {
+      return args.clone();
+    }
+
+    @Override
+    public Type getRawType() {
+      return raw;
+    }
+
+    @Override
+    public @Nullable Type getOwnerType() {
+      return null;
+    }
+  }
+
+  private boolean compileExample(String fileName, DiagnosticCollector<JavaFileObject> diagnostics)
+      throws IOException {
+    requireNonNull(tempDir);
+
+    var compiler = ToolProvider.getSystemJavaCompiler();
 
     var fileManager = compiler.getStandardFileManager(diagnostics, null, null);
     fileManager.setLocation(StandardLocation.CLASS_OUTPUT, List.of(tempDir.toFile()));
@@ -56,11 +260,6 @@ public class WitnessResolutionCheckerTest {
             compilationUnits);
     task.setProcessors(List.of(new WitnessResolutionChecker()));
 
-    // When
-    boolean success = task.call();
-
-    // Then
-    assertThat(diagnostics.getDiagnostics()).isEmpty();
-    assertThat(success).isTrue();
+    return task.call();
   }
 }
@@ -1,6 +1,7 @@
 package com.garciat.typeclasses.testclasses;
 
 import com.garciat.typeclasses.api.TypeClass;
+import java.util.List;
 
 @TypeClass
 public interface OverlapShow<A> {
@@ -20,4 +21,9 @@ public interface OverlapShow<A> {
   static OverlapShow<String> stringShow() {
     return s -> "String: " + s;
   }
+
+  @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+  static <A> OverlapShow<List<A>> listShow(TestShow<A> showA) {
+    return list -> "List: " + TestShow.listShow(showA).show(list);
+  }
 }
@@ -0,0 +1,53 @@
+package com.garciat.typeclasses.testclasses;
+
+import static com.garciat.typeclasses.TypeClasses.witness;
+
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.api.TypeClass;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Two type classes whose witness constructors summon each other's witness the first time they run,
+ * once both are running on their own threads.
+ */
+public final class TestCycle {
+  private TestCycle() {}
+
+  private static final CountDownLatch started = new CountDownLatch(2);
+
+  private static void summonOnce(AtomicBoolean summoned, Ty<?> other) {
+    if (summoned.compareAndSet(false, true)) {
+      started.countDown();
+      try {
+        started.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      witness(other);
+    }
+  }
+
+  @TypeClass
+  public interface A<T> {
+    AtomicBoolean summoned = new AtomicBoolean();
+
+    @TypeClass.Witness
+    static A<String> a() {
+      summonOnce(summoned, new Ty<B<String>>() {});
+      return new A<>() {};
+    }
+  }
+
+  @TypeClass
+  public interface B<T> {
+    AtomicBoolean summoned = new AtomicBoolean();
+
+    @TypeClass.Witness
+    static B<String> b() {
+      summonOnce(summoned, new Ty<A<String>>() {});
+      return new B<>() {};
+    }
+  }
+}
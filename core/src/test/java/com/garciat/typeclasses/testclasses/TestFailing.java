@@ -0,0 +1,11 @@
+package com.garciat.typeclasses.testclasses;
+
+import com.garciat.typeclasses.api.TypeClass;
+
+@TypeClass
+public interface TestFailing<A> {
+  @TypeClass.Witness
+  static TestFailing<String> failing() {
+    throw new IllegalStateException("witness constructor failure");
+  }
+}
@@ -0,0 +1,18 @@
+package com.garciat.typeclasses.testclasses;
+
+import com.garciat.typeclasses.api.Lazy;
+import com.garciat.typeclasses.api.TypeClass;
+import java.util.Optional;
+
+@TypeClass
+public interface TestLazy<A> {
+  String show(A a);
+
+  record Chain(Optional<Chain> next) {}
+
+  // Depends on its own witness, which is only available lazily
+  @TypeClass.Witness
+  static TestLazy<Chain> chain(Lazy<TestLazy<Chain>> self) {
+    return c -> c.next().map(n -> "link>" + self.get().show(n)).orElse("end");
+  }
+}
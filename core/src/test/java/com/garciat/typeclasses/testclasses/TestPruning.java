@@ -0,0 +1,21 @@
+package com.garciat.typeclasses.testclasses;
+
+import com.garciat.typeclasses.api.TypeClass;
+import java.util.List;
+import java.util.Optional;
+
+@TypeClass
+public interface TestPruning<A> {
+  String describe();
+
+  // Has dependencies to resolve, unlike the more specific instance that overlaps it
+  @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPABLE)
+  static <A> TestPruning<A> general(TestShow<Optional<List<A>>> show) {
+    return () -> "general";
+  }
+
+  @TypeClass.Witness(overlap = TypeClass.Witness.Overlap.OVERLAPPING)
+  static TestPruning<Integer> specific() {
+    return () -> "specific";
+  }
+}
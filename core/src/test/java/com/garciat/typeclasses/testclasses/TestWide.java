@@ -0,0 +1,34 @@
+package com.garciat.typeclasses.testclasses;
+
+import com.garciat.typeclasses.api.TypeClass;
+import java.util.List;
+import java.util.Optional;
+
+@TypeClass
+public interface TestWide<A> {
+  String describe();
+
+  record Wide() {}
+
+  // More dependencies than the exact-arity invocation fast path handles
+  @TypeClass.Witness
+  static TestWide<Wide> wide(
+      TestShow<String> s1,
+      TestShow<Integer> s2,
+      TestShow<Optional<String>> s3,
+      TestShow<Optional<Integer>> s4,
+      TestShow<List<String>> s5,
+      TestShow<List<Integer>> s6,
+      TestShow<List<Optional<String>>> s7) {
+    return () ->
+        String.join(
+            " ",
+            s1.show("a"),
+            s2.show(1),
+            s3.show(Optional.of("b")),
+            s4.show(Optional.empty()),
+            s5.show(List.of("c")),
+            s6.show(List.of(2)),
+            s7.show(List.of(Optional.of("d"))));
+  }
+}
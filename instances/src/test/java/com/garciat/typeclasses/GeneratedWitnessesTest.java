@@ -0,0 +1,53 @@
+package com.garciat.typeclasses;
+
+import static com.garciat.typeclasses.TypeClasses.witness;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.classes.Eq;
+import com.garciat.typeclasses.impl.utils.Maybe;
+import com.garciat.typeclasses.runtime.GeneratedFactories;
+import com.garciat.typeclasses.runtime.ResolutionListener;
+import com.garciat.typeclasses.runtime.ResolutionListeners;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+final class GeneratedWitnessesTest {
+  @Test
+  void witnessUsesGeneratedFactoryWithoutResolving() {
+    List<ResolutionListener.Resolved> resolved = new CopyOnWriteArrayList<>();
+    List<ResolutionListener.Instantiated> instantiated = new CopyOnWriteArrayList<>();
+    ResolutionListener listener =
+        new ResolutionListener() {
+          @Override
+          public void resolved(Resolved resolution) {
+            resolved.add(resolution);
+          }
+
+          @Override
+          public void instantiated(Instantiated instantiation) {
+            instantiated.add(instantiation);
+          }
+        };
+
+    ResolutionListeners.add(listener);
+    try {
+      // A witness type used by no other test, so that it is not cached yet
+      Eq<List<Optional<String>>> eq = witness(new Ty<>() {});
+
+      assertThat(Eq.eq(eq, List.of(Optional.of("a")), List.of(Optional.of("a")))).isTrue();
+      assertThat(Eq.eq(eq, List.of(Optional.of("a")), List.of(Optional.empty()))).isFalse();
+    } finally {
+      ResolutionListeners.remove(listener);
+    }
+
+    Ty<Eq<List<Optional<String>>>> ty = new Ty<>() {};
+    assertThat(GeneratedFactories.find(getClass(), RuntimeWitnessSystem.parse(ty.type())))
+        .isInstanceOf(Maybe.Just.class);
+    assertThat(resolved).isEmpty();
+    assertThat(instantiated).hasSize(1);
+  }
+}
@@ -0,0 +1,32 @@
+package com.garciat.typeclasses;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.garciat.typeclasses.api.Ty;
+import com.garciat.typeclasses.classes.Eq;
+import com.garciat.typeclasses.impl.utils.Either;
+import com.garciat.typeclasses.runtime.ReflectionMode;
+import com.garciat.typeclasses.runtime.RuntimeWitnessSystem;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+final class IndexedWitnessesTest {
+  @Test
+  void indexedTypesResolveWithReflectionForbidden() {
+    Ty<Eq<List<Optional<String>>>> ty = new Ty<>() {};
+
+    assertThat(
+            RuntimeWitnessSystem.resolve(
+                RuntimeWitnessSystem.parse(ty.type()), ReflectionMode.FORBIDDEN))
+        .isInstanceOf(Either.Right.class);
+  }
+
+  @Test
+  void indexedConstructorsMatchReflectedOnes() {
+    assertThat(RuntimeWitnessSystem.witnessConstructors(Eq.class, ReflectionMode.FORBIDDEN))
+        .isNotEmpty()
+        .containsExactlyInAnyOrderElementsOf(
+            RuntimeWitnessSystem.reflectWitnessConstructors(Eq.class));
+  }
+}